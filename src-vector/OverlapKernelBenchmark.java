@@ -0,0 +1,131 @@
+import javafx.scene.shape.Rectangle;
+import physics.OverlapKernel;
+import physics.PhysicsEngine;
+import physics.ScalarOverlapKernel;
+import physics.Side;
+import physics.objects.PhysicEntity;
+import physics.objects.PhysicObject;
+
+import java.util.Random;
+
+/**
+ * To measure the overlap kernels.
+ * First the scalar and the vector kernels test one box with arrays of boxes of several sizes: the small sizes are
+ * the ones of the cells of the spatial index. Then a dense scene (many entities gathered in a small area, so the
+ * cells are full) is updated by the engine with the kernel it uses. Run it with and without
+ * --add-modules jdk.incubator.vector to compare the engine with both kernels (without the module, only the scene
+ * is measured).
+ */
+public class OverlapKernelBenchmark {
+
+    private static final int[] SIZES = {4, 8, 16, 32, 64, 128, 256, 512, 1024, 4096};  /** The numbers of boxes tested by a call. */
+    private static final long BOXES_PER_RUN = 20_000_000;             /** The number of boxes tested by a run. */
+    private static final int RUNS = 5;                                 /** The number of runs for each size. */
+    private static final int QUERIES = 65536;                          /** The number of different boxes tested with the arrays. */
+    private static final int ENTITIES = 3000;                          /** The number of entities of the dense scene. */
+    private static final double AREA = 600;                            /** The size of the area of the dense scene. */
+    private static final int UPDATES = 300;                            /** The number of updates measured. */
+
+    public static void main(String[] args) {
+        if (OverlapKernel.get() instanceof ScalarOverlapKernel)
+            System.out.println("the Vector API is not available: only the dense scene is measured");
+        else
+            measureKernels(new ScalarOverlapKernel(), OverlapKernel.get());
+
+        System.out.println("dense scene with " + OverlapKernel.get().getClass().getSimpleName() + ": "
+                + ENTITIES + " entities in " + AREA + " x " + AREA + ", " + measureScene() + " ms per update");
+    }
+
+    /**
+     * Measures the kernels with arrays of all the sizes and prints the times.
+     * @param scalar: the scalar kernel
+     * @param vector: the vector kernel
+     */
+    private static void measureKernels(OverlapKernel scalar, OverlapKernel vector) {
+        System.out.println("boxes per call | scalar ns per box | vector ns per box | speedup");
+        for (int size : SIZES) {
+            // the best of several runs, the first ones warm up the JIT
+            double scalarTime = Double.MAX_VALUE, vectorTime = Double.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                vectorTime = Math.min(vectorTime, measure(vector, size));
+                scalarTime = Math.min(scalarTime, measure(scalar, size));
+            }
+            System.out.printf("%14d | %17.3f | %17.3f | %.2f%n", size, scalarTime, vectorTime, scalarTime / vectorTime);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Measures a kernel with arrays of random boxes.
+     * @param kernel: the kernel
+     * @param size: the number of boxes tested by a call
+     * @return the time per box in nanoseconds
+     */
+    private static double measure(OverlapKernel kernel, int size) {
+        Random random = new Random(42);
+        double[] minXs = new double[size], minYs = new double[size], maxXs = new double[size], maxYs = new double[size];
+        for (int i = 0; i < size; i++) {
+            minXs[i] = random.nextDouble() * 100;
+            minYs[i] = random.nextDouble() * 100;
+            maxXs[i] = minXs[i] + random.nextDouble() * 10;
+            maxYs[i] = minYs[i] + random.nextDouble() * 10;
+        }
+        int[] result = new int[size];
+
+        // random boxes to test, so the processor can't learn the results of the comparisons
+        double[] queries = new double[QUERIES * 2];
+        for (int i = 0; i < queries.length; i++)
+            queries[i] = random.nextDouble() * 100;
+
+        long calls = BOXES_PER_RUN / size;
+        long found = 0;
+        long start = System.nanoTime();
+        for (long call = 0; call < calls; call++) {
+            int query = (int) (call % QUERIES) * 2;
+            double x = queries[query], y = queries[query + 1];
+            found += kernel.overlaps(x, y, x + 10, y + 10, minXs, minYs, maxXs, maxYs, 0, size, true, result);
+        }
+        long time = System.nanoTime() - start;
+
+        // the result is used, so the JIT can't remove the calls
+        if (found < 0)
+            System.out.println(found);
+        return (double) time / (calls * size);
+    }
+
+    /**
+     * Measures the update of the dense scene.
+     * @return the time per update in milliseconds
+     */
+    private static double measureScene() {
+        PhysicsEngine engine = new PhysicsEngine();
+        Random random = new Random(42);
+        for (int i = 0; i < ENTITIES; i++) {
+            Particle particle = new Particle(new Rectangle(random.nextDouble() * AREA, random.nextDouble() * AREA, 8, 8));
+            particle.setVelocity(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10);
+            engine.addObject(particle);
+        }
+
+        for (int i = 0; i < UPDATES; i++)
+            engine.update(1 / 60.f);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++)
+            engine.update(1 / 60.f);
+        return (System.nanoTime() - start) / 1e6 / UPDATES;
+    }
+
+    /**
+     * An entity doing nothing in its collisions.
+     */
+    private static class Particle extends PhysicEntity {
+
+        Particle(Rectangle hitbox) {
+            super("particle", hitbox);
+        }
+
+        @Override
+        public void collisionTriggeredOnSide(Side side, PhysicObject object) {
+        }
+    }
+}
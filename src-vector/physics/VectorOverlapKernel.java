@@ -0,0 +1,56 @@
+package physics;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This class is the overlap kernel using the Vector API: the box is tested with as many boxes as there are
+ * lanes in the preferred vectors of the processor.
+ * For each box, the greatest of the distances between the sides of the boxes (left of one minus right of the other
+ * on each axis) is computed with lane-wise operations: the boxes overlap if it's negative (or 0 if they touch).
+ * The lanes are only read when the smallest distance of the vector shows an overlap. The masks of comparisons are
+ * not used, because they are created as objects by some versions of the JVM, so the kernel doesn't allocate.
+ * Reading the lanes and reducing the vectors cost more than the scalar tests for the small ranges (like the items of
+ * a cell of the spatial index), so the ranges of less than MIN_VECTOR_BOXES boxes are tested one by one (the
+ * threshold is measured with OverlapKernelBenchmark).
+ * This class needs the incubator module (--add-modules jdk.incubator.vector) to be compiled and run, so it's in its
+ * own source directory (src-vector), compiled after the classes of src. Without it, the scalar kernel is used.
+ */
+public class VectorOverlapKernel extends OverlapKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;   /** The vectors used. */
+    private static final int MIN_VECTOR_BOXES = 256;                                        /** The number of boxes from which the vectors are used. */
+
+    @Override
+    public int overlaps(double minX, double minY, double maxX, double maxY,
+                        double[] minXs, double[] minYs, double[] maxXs, double[] maxYs,
+                        int from, int to, boolean touching, int[] result) {
+        if (to - from < MIN_VECTOR_BOXES)
+            return overlapsScalar(minX, minY, maxX, maxY, minXs, minYs, maxXs, maxYs, from, to, touching, result, 0);
+
+        int count = 0;
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector distance = DoubleVector.fromArray(SPECIES, minXs, i).sub(maxX)
+                    .max(DoubleVector.fromArray(SPECIES, maxXs, i).neg().add(minX))
+                    .max(DoubleVector.fromArray(SPECIES, minYs, i).sub(maxY))
+                    .max(DoubleVector.fromArray(SPECIES, maxYs, i).neg().add(minY));
+
+            double smallest = distance.reduceLanes(VectorOperators.MIN);
+            if (touching ? smallest > 0 : smallest >= 0)
+                continue;
+
+            for (int lane = 0; lane < SPECIES.length(); lane++) {
+                double laneDistance = distance.lane(lane);
+                if (touching ? laneDistance <= 0 : laneDistance < 0)
+                    result[count++] = i + lane;
+            }
+        }
+
+        // the last boxes
+        return overlapsScalar(minX, minY, maxX, maxY, minXs, minYs, maxXs, maxYs, i, to, touching, result, count);
+    }
+}
@@ -0,0 +1,156 @@
+import javafx.scene.shape.Rectangle;
+import physics.PhysicsEngine;
+import physics.Sensor;
+import physics.Side;
+import physics.SnapshotChannel;
+import physics.objects.PhysicEntity;
+import physics.objects.PhysicObject;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * To test that the update of the engine doesn't create objects once it's warmed up.
+ * Entities bounce in a box with a sensor, the separation of the entities, the substeps, the deferred
+ * collisions, the reordering of the objects and a snapshot channel. The bytes allocated by the thread are
+ * measured (with the ThreadMXBean of the JVM) during several windows of updates after the warm up, minus the cost
+ * of the measure itself. The updates must not allocate: the cells of the grid are reused, the reordering sorts in
+ * place... A cell of the grid still grows when more entities than ever gather in it, so the warm up is long enough
+ * for the entities to have made their records (the scene is the same at each run). The test fails (exit code 1) if
+ * a window allocated something.
+ */
+public class AllocationTest {
+
+    private static final int ENTITIES = 300;            /** The number of entities. */
+    private static final int WARM_UP_UPDATES = 70000;  /** The updates before the measure (the buffers grow and the JIT compiles). */
+    private static final int WINDOWS = 10;              /** The number of windows measured. */
+    private static final int WINDOW_UPDATES = 500;      /** The number of updates of a window. */
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("The JVM can't measure the memory allocated by a thread.");
+            System.exit(1);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        PhysicsEngine engine = createEngine();
+        SnapshotChannel channel = engine.createSnapshotChannel();
+        float delta = 1 / 60.f;
+
+        for (int i = 0; i < WARM_UP_UPDATES; i++)
+            engine.update(delta);
+
+        // the cost of the measure itself
+        long before = threads.getThreadAllocatedBytes(thread);
+        long measureCost = threads.getThreadAllocatedBytes(thread) - before;
+
+        boolean allocates = false;
+        for (int window = 0; window < WINDOWS; window++) {
+            before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < WINDOW_UPDATES; i++)
+                engine.update(delta);
+            long allocated = threads.getThreadAllocatedBytes(thread) - before - measureCost;
+            allocates |= allocated > 0;
+
+            System.out.println("window " + window + ": " + WINDOW_UPDATES + " updates of " + engine.getObjects().size() + " objects, "
+                    + allocated + " bytes allocated (" + (double) allocated / WINDOW_UPDATES + " per update)");
+        }
+
+        System.out.println("last snapshot: update " + channel.acquire().getUpdate());
+        if (allocates) {
+            System.out.println("FAILED: the update allocates.");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Creates the engine of the test.
+     * @return the engine
+     */
+    private static PhysicsEngine createEngine() {
+        PhysicsEngine engine = new PhysicsEngine();
+        engine.setSeparatingEntities(true);
+        engine.setSubstepping(0.5, 8);
+        engine.setDeferredCollisionEvents(true);
+        engine.setReorderInterval(100);
+
+        // the box (thick, the entities pushed in a side by the other ones must not go through it)
+        engine.addObject(new Box(new Rectangle(-200, 1000, 1400, 200)));
+        engine.addObject(new Box(new Rectangle(-200, 0, 200, 1000)));
+        engine.addObject(new Box(new Rectangle(1000, 0, 200, 1000)));
+        engine.addObject(new Box(new Rectangle(-200, -200, 1400, 200)));
+
+        engine.addSensor(new CountingSensor(new Rectangle(400, 400, 200, 200)));
+
+        Random random = new Random(42);
+        for (int i = 0; i < ENTITIES; i++) {
+            Ball ball = new Ball(new Rectangle(random.nextDouble() * 980, random.nextDouble() * 980, 8, 8));
+            ball.setVelocity(random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100);
+            engine.addObject(ball);
+        }
+
+        return engine;
+    }
+
+    /**
+     * A wall of the box.
+     */
+    private static class Box extends PhysicObject {
+
+        Box(Rectangle hitbox) {
+            super("box", hitbox);
+        }
+
+        @Override
+        public void collisionTriggeredOnSide(Side side, PhysicObject object) {
+        }
+    }
+
+    /**
+     * An entity bouncing on the sides of the box.
+     */
+    private static class Ball extends PhysicEntity {
+
+        Ball(Rectangle hitbox) {
+            super("ball", hitbox);
+        }
+
+        @Override
+        public void collisionTriggeredOnSide(Side side, PhysicObject object) {
+            if (!(object instanceof Box))
+                return;
+
+            double velocityX = getVelocityX(), velocityY = getVelocityY();
+            if (side == Side.LEFT && velocityX < 0 || side == Side.RIGHT && velocityX > 0)
+                velocityX = -velocityX;
+            else if (side == Side.TOP && velocityY < 0 || side == Side.BOTTOM && velocityY > 0)
+                velocityY = -velocityY;
+
+            setVelocity(velocityX, velocityY);
+        }
+    }
+
+    /**
+     * A sensor counting the entities going through it.
+     */
+    private static class CountingSensor extends Sensor {
+
+        private int entered = 0;
+
+        CountingSensor(Rectangle area) {
+            super(area);
+        }
+
+        @Override
+        public void entityEntered(PhysicEntity entity) {
+            this.entered++;
+        }
+
+        @Override
+        public void entityExited(PhysicEntity entity) {
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import physics.PhysicsEngine;
+import physics.Side;
+import physics.SnapshotChannel;
+import physics.Util.HeadlessRunner;
+import physics.Util.ObjectsImageLoader;
+import physics.Util.SimulationScenario;
+import physics.objects.PhysicEntity;
+import physics.objects.PhysicObject;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * To test the headless runner: the level of the pattern image is simulated in several scenarios in parallel,
+ * without waiting between the updates, and the trajectories are written in the directory given as argument
+ * (a new temporary directory by default, so the test doesn't write in the project).
+ * The objects of the level print nothing, so the output only has the results of the scenarios.
+ */
+public class HeadlessTest {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        BufferedImage patternImage = ImageIO.read(new File("assets/images/pattern.png"));
+        File directory = args.length > 0 ? new File(args[0]) : Files.createTempDirectory("trajectories").toFile();
+        directory.mkdirs();
+        System.out.println("trajectories written in " + directory.getPath());
+
+        // the same level with different deltas
+        List<SimulationScenario> scenarios = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            float delta = 1 / (float) (30 * i);
+            scenarios.add(new SimulationScenario("pattern-" + i, () -> new QuietPatternLoader().getEngineWithPatternImage(patternImage), 30 * 10 * i, delta, new File(directory, "pattern-" + i + ".csv"), SimulationScenario.OutputFormat.CSV));
+        }
+
+        // the level after one second, from a snapshot
+        PhysicsEngine engine = new QuietPatternLoader().getEngineWithPatternImage(patternImage);
+        SnapshotChannel channel = engine.createSnapshotChannel();
+        for (int i = 0; i < 30; i++)
+            engine.update(1 / 30.f);
+        scenarios.add(new SimulationScenario("snapshot", PhysicsEngine::new, channel.acquire(), 30 * 9, 1 / 30.f, new File(directory, "snapshot.csv"), SimulationScenario.OutputFormat.CSV));
+
+        HeadlessRunner runner = new HeadlessRunner();
+        for (HeadlessRunner.Result result : runner.runAll(scenarios))
+            System.out.println(result.getName() + ": " + result.getTicks() + " ticks in " + result.getNanos() / 1e6 + " ms ("
+                    + (int) result.getTicksPerSecond() + " ticks per second, " + result.getRecords() + " positions written)");
+        runner.close();
+    }
+
+    /**
+     * The loader of the pattern image with objects that print nothing.
+     */
+    private static class QuietPatternLoader extends ObjectsImageLoader {
+
+        QuietPatternLoader() {
+            super(new int[]{124, 255});
+        }
+
+        @Override
+        protected PhysicObject getObjectFromColor(int color) {
+            if (color == 124)
+                return new QuietWall();
+
+            if (color == 255) {
+                QuietEntity entity = new QuietEntity();
+                entity.setVelocity(0, -50);
+                return entity;
+            }
+
+            return null;
+        }
+
+        @Override
+        protected boolean isEntityColor(int color) {
+            return color == 255;
+        }
+    }
+
+    /**
+     * A wall doing nothing in its collisions.
+     */
+    private static class QuietWall extends PhysicObject {
+
+        @Override
+        public void collisionTriggeredOnSide(Side side, PhysicObject object) {
+        }
+    }
+
+    /**
+     * An entity doing nothing in its collisions.
+     */
+    private static class QuietEntity extends PhysicEntity {
+
+        @Override
+        public void collisionTriggeredOnSide(Side side, PhysicObject object) {
+        }
+    }
+}
@@ -1,4 +1,3 @@
-import javafx.geometry.Point2D;
 import javafx.scene.shape.Rectangle;
 import physics.PhysicsEngine;
 import testObjects.Player;
@@ -91,7 +90,7 @@ public class Main {
             // a player
             player = new Player();
             player.setHitbox(new Rectangle(0, 300, 64, 64));
-            player.setVelocity(new Point2D(0, -50)); // apply a velocity
+            player.setVelocity(0, -50); // apply a velocity
             player.setName("Player");
 
             // create engine
@@ -111,13 +110,13 @@ public class Main {
         long start = System.currentTimeMillis();
 
         // and run until the player is stopped
-        while (player.getVelocity().getY() != 0) {
+        while (player.getVelocityY() != 0) {
 
             // update the engine
             engine.update(1 / (float) FPS);
 
             // see if the player will hit the wall on the next update
-            if(engine.collisionOnNextUpdate(player, 1 / (float) FPS) instanceof Wall && player.getVelocity().getY() != 0)
+            if(engine.collisionOnNextUpdate(player, 1 / (float) FPS) instanceof Wall && player.getVelocityY() != 0)
                 System.out.println("I will hit something on the next update :'(");
 
             // print the y position
@@ -0,0 +1,145 @@
+package physics;
+
+import javafx.geometry.Point2D;
+import javafx.scene.shape.Rectangle;
+import physics.objects.PhysicObject;
+
+/**
+ * This class represents a camera of a relative engine.
+ * A camera follows a reference object and has its own plan: the positions of the objects can be given
+ * relatively to the top-left corner of the plan. The reference object has a liberty rectangle where it's
+ * allowed to move without moving the plan.
+ * The cameras are created and updated by the RelativePhysicsEngine.
+ */
+public class Camera {
+
+    private PhysicObject referenceObject = null;            /** The reference object. */
+    private Rectangle libertyRectangle;                     /** The rectangle of liberty for the focused object. */
+    private double xPlan = 0;                               /** The x coordinate of the plan. (top left corner) */
+    private double yPlan = 0;                               /** The y coordinate of the plan. (top left corner) */
+    private double currentXLiberty = 0;                     /** The current liberty of the reference object in x. */
+    private double currentYLiberty = 0;                     /** The current liberty of the reference object in y. */
+    private double savedReferenceX;                         /** The x of the reference object before the update. */
+    private double savedReferenceY;                         /** The y of the reference object before the update. */
+
+    /**
+     * Constructor.
+     * @param referenceObject: the reference object (can be null)
+     * @param libertyRectangle: the liberty rectangle
+     */
+    Camera(PhysicObject referenceObject, Rectangle libertyRectangle) {
+        this.referenceObject = referenceObject;
+        this.libertyRectangle = libertyRectangle;
+        focusOnReferenceObject();
+    }
+
+    /**
+     * This function returns the relative position of an object according to the plan of the camera.
+     * @param object: the object
+     * @return the relative position of an object.
+     */
+    public Point2D getRelativePosition(PhysicObject object) {
+        return new Point2D(object.getHitbox().getX() - this.xPlan, object.getHitbox().getY() - this.yPlan);
+    }
+
+    /**
+     * To save the position of the reference object before an update of the engine.
+     */
+    void saveReferencePosition() {
+        if (this.referenceObject != null) {
+            this.savedReferenceX = this.referenceObject.getHitbox().getX();
+            this.savedReferenceY = this.referenceObject.getHitbox().getY();
+        }
+    }
+
+    /**
+     * To move the plan after an update of the engine, if the reference object went out of its liberty rectangle.
+     */
+    void updatePlan() {
+        if (this.referenceObject == null)
+            return;
+
+        // x
+        this.currentXLiberty += this.referenceObject.getHitbox().getX() - this.savedReferenceX;
+        if(Math.abs(this.currentXLiberty) > this.libertyRectangle.getWidth() / 2.d) {
+            if(this.currentXLiberty < 0) {
+                this.xPlan -= Math.abs(this.libertyRectangle.getWidth() / 2.d - Math.abs(this.currentXLiberty));
+                this.currentXLiberty = -1 * (this.libertyRectangle.getWidth() / 2.d);
+            }
+            else {
+                this.xPlan += Math.abs(this.libertyRectangle.getWidth() / 2.d - Math.abs(this.currentXLiberty));
+                this.currentXLiberty = this.libertyRectangle.getWidth() / 2.d;
+            }
+        }
+
+        // y
+        this.currentYLiberty += this.referenceObject.getHitbox().getY() - this.savedReferenceY;
+        if(Math.abs(this.currentYLiberty) > this.libertyRectangle.getHeight() / 2.d) {
+            if(this.currentYLiberty < 0) {
+                this.yPlan -= Math.abs(this.libertyRectangle.getHeight() / 2.d - Math.abs(this.currentYLiberty));
+                this.currentYLiberty = -1 * (this.libertyRectangle.getHeight() / 2.d);
+            }
+            else {
+                this.yPlan += Math.abs(this.libertyRectangle.getHeight() / 2.d - Math.abs(this.currentYLiberty));
+                this.currentYLiberty = this.libertyRectangle.getHeight() / 2.d;
+            }
+        }
+    }
+
+    /**
+     * To focus on the reference object.
+     */
+    public void focusOnReferenceObject() {
+        if(this.referenceObject != null) {
+            this.xPlan = this.referenceObject.getHitbox().getX() + this.referenceObject.getHitbox().getWidth() / 2 - (this.libertyRectangle.getWidth() / 2.d + this.libertyRectangle.getX());
+            this.yPlan = this.referenceObject.getHitbox().getY() + this.referenceObject.getHitbox().getHeight() / 2 - (this.libertyRectangle.getHeight() / 2.d + this.libertyRectangle.getY());
+            this.currentXLiberty = 0;
+            this.currentYLiberty = 0;
+        }
+    }
+
+    /**
+     * To change the reference object (the engine checks that it's in the engine).
+     * @param referenceObject: the new reference object
+     */
+    void setReferenceObject(PhysicObject referenceObject) {
+        this.referenceObject = referenceObject;
+        focusOnReferenceObject();
+    }
+
+    public PhysicObject getReferenceObject() {
+        return referenceObject;
+    }
+
+    public Rectangle getLibertyRectangle() {
+        return libertyRectangle;
+    }
+
+    /**
+     * To change the width of liberty of movements for the reference object.
+     * To focus on the reference object all the time, send 0.
+     * @param libertyRectangle: the new rectangle of liberty
+     */
+    public void setLibertyRectangle(Rectangle libertyRectangle) {
+        if (libertyRectangle.getWidth() >= 0 && libertyRectangle.getHeight() >= 0 && libertyRectangle.getX() >= 0 && libertyRectangle.getY() >= 0) {
+            this.libertyRectangle = libertyRectangle;
+            focusOnReferenceObject();
+        }
+    }
+
+    /**
+     * Getter of the x of the plan (top-left corner).
+     * @return the x of the plan
+     */
+    public double getXPlan() {
+        return xPlan;
+    }
+
+    /**
+     * Getter of the y of the plan (top-left corner).
+     * @return the y of the plan
+     */
+    public double getYPlan() {
+        return yPlan;
+    }
+}
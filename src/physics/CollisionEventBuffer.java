@@ -0,0 +1,93 @@
+package physics;
+
+import physics.objects.PhysicObject;
+
+import java.util.Arrays;
+
+/**
+ * This class stores the collisions found during an update when the engine defers their dispatch.
+ * The events are stored in arrays allocated once (they only grow when they are full), so recording
+ * a collision doesn't create objects.
+ */
+public class CollisionEventBuffer {
+
+    private PhysicObject[] firstObjects;            /** The first object of each collision. */
+    private PhysicObject[] secondObjects;           /** The second object of each collision. */
+    private Side[] sides;                           /** The side of the first object where each collision happened. */
+    private int size;                               /** The number of collisions in the buffer. */
+
+    /**
+     * Constructor.
+     * @param capacity: the number of collisions that can be stored before the buffer grows
+     */
+    public CollisionEventBuffer(int capacity) {
+        this.firstObjects = new PhysicObject[Math.max(1, capacity)];
+        this.secondObjects = new PhysicObject[Math.max(1, capacity)];
+        this.sides = new Side[Math.max(1, capacity)];
+        this.size = 0;
+    }
+
+    /**
+     * To record a collision.
+     * @param firstObject: the first object
+     * @param side: the side of the first object where the collision happened
+     * @param secondObject: the second object
+     */
+    public void add(PhysicObject firstObject, Side side, PhysicObject secondObject) {
+        if (this.size == this.sides.length) {
+            this.firstObjects = Arrays.copyOf(this.firstObjects, this.size * 2);
+            this.secondObjects = Arrays.copyOf(this.secondObjects, this.size * 2);
+            this.sides = Arrays.copyOf(this.sides, this.size * 2);
+        }
+
+        this.firstObjects[this.size] = firstObject;
+        this.secondObjects[this.size] = secondObject;
+        this.sides[this.size] = side;
+        this.size++;
+    }
+
+    /**
+     * To remove all the collisions of the buffer.
+     */
+    public void clear() {
+        Arrays.fill(this.firstObjects, 0, this.size, null);
+        Arrays.fill(this.secondObjects, 0, this.size, null);
+        Arrays.fill(this.sides, 0, this.size, null);
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of collisions in the buffer.
+     * @return the number of collisions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the first object of a collision.
+     * @param index: the index of the collision
+     * @return the first object
+     */
+    public PhysicObject getFirstObject(int index) {
+        return this.firstObjects[index];
+    }
+
+    /**
+     * Returns the second object of a collision.
+     * @param index: the index of the collision
+     * @return the second object
+     */
+    public PhysicObject getSecondObject(int index) {
+        return this.secondObjects[index];
+    }
+
+    /**
+     * Returns the side of the first object where a collision happened.
+     * @param index: the index of the collision
+     * @return the side
+     */
+    public Side getSide(int index) {
+        return this.sides[index];
+    }
+}
@@ -0,0 +1,20 @@
+package physics;
+
+import physics.objects.PhysicObject;
+
+/**
+ * This interface represents the handler of the collisions between two types of objects (see
+ * PhysicsEngine.setCollisionHandler). With the typed dispatch, the engine calls the handler of the pair of types
+ * instead of the collision functions of the two objects.
+ */
+public interface CollisionHandler {
+
+    /**
+     * This function is called once for each collision between an object of the first type and an object of the
+     * second type of the handler.
+     * @param firstObject: the object of the first type
+     * @param side: the side of the first object where the collision happened
+     * @param secondObject: the object of the second type
+     */
+    void collisionTriggered(PhysicObject firstObject, Side side, PhysicObject secondObject);
+}
@@ -0,0 +1,101 @@
+package physics;
+
+import physics.objects.PhysicObject;
+
+/**
+ * This class stores the collision handlers of an engine in a table indexed by the pair of type ids of the objects,
+ * so finding the handler of a collision is a lookup in an array.
+ * A handler of the pair (A, B) is stored in the cell (A, B) and in the cell (B, A) with the swapped flag, so
+ * it always receives the object of type A first.
+ */
+class CollisionHandlerTable {
+
+    private final CollisionHandler[] handlers = new CollisionHandler[PhysicObject.TYPES_COUNT * PhysicObject.TYPES_COUNT];  /** The handler of each pair of types. */
+    private final boolean[] swapped = new boolean[PhysicObject.TYPES_COUNT * PhysicObject.TYPES_COUNT];    /** If the objects must be swapped for the handler of each pair. */
+    private int size = 0;                           /** The number of pairs with a handler. */
+
+    /**
+     * To set the handler of a pair of types.
+     * @param firstType: the type of the first object given to the handler
+     * @param secondType: the type of the second object given to the handler
+     * @param handler: the handler (null to remove it)
+     */
+    void set(int firstType, int secondType, CollisionHandler handler) {
+        checkType(firstType);
+        checkType(secondType);
+
+        int index = firstType * PhysicObject.TYPES_COUNT + secondType;
+        int swappedIndex = secondType * PhysicObject.TYPES_COUNT + firstType;
+        if (this.handlers[index] == null && handler != null)
+            this.size++;
+        else if (this.handlers[index] != null && handler == null)
+            this.size--;
+
+        this.handlers[index] = handler;
+        this.swapped[index] = false;
+        this.handlers[swappedIndex] = handler;
+        this.swapped[swappedIndex] = false;
+        if (index != swappedIndex)
+            this.swapped[swappedIndex] = handler != null;
+    }
+
+    /**
+     * Returns the handler set for a pair of types (in this order).
+     * @param firstType: the type of the first object
+     * @param secondType: the type of the second object
+     * @return the handler, or null
+     */
+    CollisionHandler get(int firstType, int secondType) {
+        checkType(firstType);
+        checkType(secondType);
+
+        int index = firstType * PhysicObject.TYPES_COUNT + secondType;
+        return this.swapped[index] ? null : this.handlers[index];
+    }
+
+    /**
+     * Returns if a collision between two objects has a handler.
+     * @param firstObject: the first object
+     * @param secondObject: the second object
+     * @return if there's a handler
+     */
+    boolean has(PhysicObject firstObject, PhysicObject secondObject) {
+        return this.handlers[firstObject.getTypeId() * PhysicObject.TYPES_COUNT + secondObject.getTypeId()] != null;
+    }
+
+    /**
+     * To call the handler of a collision, if the pair of types has one.
+     * @param firstObject: the first object
+     * @param side: the side of the first object where the collision happened
+     * @param oppositeSide: the side of the second object where the collision happened
+     * @param secondObject: the second object
+     */
+    void dispatch(PhysicObject firstObject, Side side, Side oppositeSide, PhysicObject secondObject) {
+        int index = firstObject.getTypeId() * PhysicObject.TYPES_COUNT + secondObject.getTypeId();
+        CollisionHandler handler = this.handlers[index];
+        if (handler == null)
+            return;
+
+        if (this.swapped[index])
+            handler.collisionTriggered(secondObject, oppositeSide, firstObject);
+        else
+            handler.collisionTriggered(firstObject, side, secondObject);
+    }
+
+    /**
+     * Returns the number of pairs of types with a handler.
+     * @return the number of handlers
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * To check a type id.
+     * @param type: the type id
+     */
+    private static void checkType(int type) {
+        if (type < 0 || type >= PhysicObject.TYPES_COUNT)
+            throw new IllegalArgumentException("The type id must be between 0 and " + (PhysicObject.TYPES_COUNT - 1) + ".");
+    }
+}
@@ -0,0 +1,19 @@
+package physics;
+
+import physics.objects.PhysicObject;
+
+/**
+ * This interface represents a listener of the collisions of a type of objects.
+ * The listeners are called by the engine when it dispatches the deferred collisions, after the collision
+ * function of the object.
+ */
+public interface CollisionListener {
+
+    /**
+     * This function is called for each collision of an object of the type of the listener.
+     * @param object: the object of the type of the listener
+     * @param side: the side of the object where the collision happened
+     * @param otherObject: the other object with which the collision happened
+     */
+    void collisionTriggered(PhysicObject object, Side side, PhysicObject otherObject);
+}
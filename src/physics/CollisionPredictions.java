@@ -0,0 +1,110 @@
+package physics;
+
+import physics.objects.PhysicEntity;
+import physics.objects.PhysicObject;
+
+import java.util.Arrays;
+
+/**
+ * This class stores the collisions predicted for the next update by the engine (see PhysicsEngine.predictCollisions):
+ * for each entity that will hit something, the first object hit, the time of impact and the side of the entity.
+ * The predictions are stored in arrays allocated once (they only grow when they are full), so the buffer can be
+ * reused at each update without creating objects.
+ */
+public class CollisionPredictions {
+
+    private PhysicEntity[] entities;                /** The entity of each prediction. */
+    private PhysicObject[] objects;                 /** The object hit first by the entity. */
+    private double[] timesOfImpact;                 /** The time before the impact in second. */
+    private Side[] sides;                           /** The side of the entity where the impact happens. */
+    private int size;                               /** The number of predictions in the buffer. */
+
+    /**
+     * Constructor.
+     * @param capacity: the number of predictions that can be stored before the buffer grows
+     */
+    public CollisionPredictions(int capacity) {
+        this.entities = new PhysicEntity[Math.max(1, capacity)];
+        this.objects = new PhysicObject[Math.max(1, capacity)];
+        this.timesOfImpact = new double[Math.max(1, capacity)];
+        this.sides = new Side[Math.max(1, capacity)];
+        this.size = 0;
+    }
+
+    /**
+     * To record a prediction.
+     * @param entity: the entity
+     * @param object: the object hit first
+     * @param timeOfImpact: the time before the impact in second
+     * @param side: the side of the entity where the impact happens
+     */
+    void add(PhysicEntity entity, PhysicObject object, double timeOfImpact, Side side) {
+        if (this.size == this.sides.length) {
+            this.entities = Arrays.copyOf(this.entities, this.size * 2);
+            this.objects = Arrays.copyOf(this.objects, this.size * 2);
+            this.timesOfImpact = Arrays.copyOf(this.timesOfImpact, this.size * 2);
+            this.sides = Arrays.copyOf(this.sides, this.size * 2);
+        }
+
+        this.entities[this.size] = entity;
+        this.objects[this.size] = object;
+        this.timesOfImpact[this.size] = timeOfImpact;
+        this.sides[this.size] = side;
+        this.size++;
+    }
+
+    /**
+     * To remove all the predictions of the buffer.
+     */
+    public void clear() {
+        Arrays.fill(this.entities, 0, this.size, null);
+        Arrays.fill(this.objects, 0, this.size, null);
+        Arrays.fill(this.sides, 0, this.size, null);
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of predictions in the buffer.
+     * @return the number of predictions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the entity of a prediction.
+     * @param index: the index of the prediction
+     * @return the entity
+     */
+    public PhysicEntity getEntity(int index) {
+        return this.entities[index];
+    }
+
+    /**
+     * Returns the object hit first by the entity of a prediction.
+     * For a tile, the object representing the type of the tile is returned.
+     * @param index: the index of the prediction
+     * @return the object
+     */
+    public PhysicObject getObject(int index) {
+        return this.objects[index];
+    }
+
+    /**
+     * Returns the time before the impact of a prediction (0 if the hit boxes already overlap).
+     * @param index: the index of the prediction
+     * @return the time in second
+     */
+    public double getTimeOfImpact(int index) {
+        return this.timesOfImpact[index];
+    }
+
+    /**
+     * Returns the side of the entity where the impact of a prediction happens.
+     * @param index: the index of the prediction
+     * @return the side
+     */
+    public Side getSide(int index) {
+        return this.sides[index];
+    }
+}
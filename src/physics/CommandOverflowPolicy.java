@@ -0,0 +1,11 @@
+package physics;
+
+/**
+ * This enum represents what the engine does with a command when its command queue is full.
+ * REJECT throws an exception to the thread sending the command, DROP ignores the command (the function
+ * sending it returns false and the command is counted in the dropped commands).
+ */
+public enum CommandOverflowPolicy {
+    REJECT,
+    DROP
+}
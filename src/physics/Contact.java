@@ -0,0 +1,52 @@
+package physics;
+
+/**
+ * This class represents the contact between two overlapping hit boxes, computed by the narrowphase of the engine.
+ * The contact is on the axis where the hit boxes overlap the least (the minimum translation vector): the normal
+ * goes from the first hit box to the second one on this axis and the depth is the overlap on this axis, so moving
+ * the first hit box of depth in the opposite direction of the normal separates them.
+ * A contact is reused by the engine from one collision to another, so its values must be read right away.
+ */
+public class Contact {
+
+    private Side side;                  /** The side of the first hit box where the contact is. */
+    private double normalX;             /** The x of the normal (-1, 0 or 1). */
+    private double normalY;             /** The y of the normal (-1, 0 or 1). */
+    private double depth;               /** The overlap of the hit boxes on the axis of the normal. */
+
+    /**
+     * To change the values of the contact.
+     * @param side: the side of the first hit box
+     * @param normalX: the x of the normal
+     * @param normalY: the y of the normal
+     * @param depth: the overlap on the axis of the normal
+     */
+    void set(Side side, double normalX, double normalY, double depth) {
+        this.side = side;
+        this.normalX = normalX;
+        this.normalY = normalY;
+        this.depth = depth;
+    }
+
+    /**
+     * Getter of the side of the first hit box where the contact is.
+     * IN if the first hit box is in the second one and AROUND if the second one is in the first one, the normal
+     * and the depth are still the ones of the axis of the minimum overlap.
+     * @return the side
+     */
+    public Side getSide() {
+        return side;
+    }
+
+    public double getNormalX() {
+        return normalX;
+    }
+
+    public double getNormalY() {
+        return normalY;
+    }
+
+    public double getDepth() {
+        return depth;
+    }
+}
@@ -0,0 +1,155 @@
+package physics;
+
+import javafx.scene.shape.Rectangle;
+import physics.objects.PhysicEntity;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * This class represents a pool of entities of an engine, for the entities created and removed very often
+ * (like projectiles or particles). A despawned entity is kept in a free list and reused by the next spawn,
+ * with its hit box, so spawning an entity usually creates no object.
+ * The pools are created by the engine (see PhysicsEngine.createPool).
+ * @param <T> the type of the entities
+ */
+public class EntityPool<T extends PhysicEntity> {
+
+    private final PhysicsEngine engine;                     /** The engine of the entities. */
+    private final Supplier<T> factory;                      /** The function creating a new entity. */
+    private final Consumer<T> resetter;                     /** The function resetting an entity when it's spawned (can be null). */
+    private final IdentityHashMap<T, Boolean> activeEntities;   /** The entities spawned in the engine. */
+    private T[] freeEntities;                               /** The entities not used (the free list). */
+    private int freeCount;                                  /** The number of entities in the free list. */
+    private int createdCount;                               /** The number of entities created by the pool. */
+    private int highWaterMark;                              /** The maximum number of entities spawned at the same time. */
+    private float defaultGravityScale = 1;                  /** The gravity scale of the entities given by the factory. */
+    private boolean defaultImportant = false;               /** If the entities given by the factory are important. */
+    private int defaultTypeId = 0;                          /** The collision type of the entities given by the factory. */
+
+    /**
+     * Constructor.
+     * @param engine: the engine
+     * @param factory: the function creating a new entity
+     * @param resetter: the function resetting the state of an entity when it's spawned (can be null)
+     * @param initialSize: the number of entities created now in the free list
+     */
+    @SuppressWarnings("unchecked")
+    EntityPool(PhysicsEngine engine, Supplier<T> factory, Consumer<T> resetter, int initialSize) {
+        this.engine = engine;
+        this.factory = factory;
+        this.resetter = resetter;
+        this.activeEntities = new IdentityHashMap<>();
+        this.freeEntities = (T[]) new PhysicEntity[Math.max(16, initialSize)];
+        this.freeCount = 0;
+        this.createdCount = 0;
+        this.highWaterMark = 0;
+
+        for (int i = 0; i < initialSize; i++)
+            this.freeEntities[this.freeCount++] = create();
+    }
+
+    /**
+     * This function spawns an entity in the engine, reusing a free entity if there's one.
+     * The hit box, the velocity, the gravity scale, the important flag and the collision type are reset (the last
+     * three to the values of the first entity given by the factory), then the resetter is run.
+     * @param x: the x of the hit box
+     * @param y: the y of the hit box
+     * @param width: the width of the hit box
+     * @param height: the height of the hit box
+     * @param velocityX: the velocity in x
+     * @param velocityY: the velocity in y
+     * @return the entity spawned
+     */
+    public T spawn(double x, double y, double width, double height, double velocityX, double velocityY) {
+        T entity = this.freeCount > 0 ? this.freeEntities[--this.freeCount] : create();
+        this.freeEntities[this.freeCount] = null;
+
+        // reset it
+        if (entity.getHitbox() == null)
+            entity.setHitbox(new Rectangle(x, y, width, height));
+        else
+            entity.setBounds(x, y, width, height);
+        entity.setVelocity(velocityX, velocityY);
+        entity.setPendingDelta(0);
+        entity.setGravityScale(this.defaultGravityScale);
+        entity.setImportant(this.defaultImportant);
+        entity.setTypeId(this.defaultTypeId);
+        if (this.resetter != null)
+            this.resetter.accept(entity);
+
+        this.activeEntities.put(entity, Boolean.TRUE);
+        this.highWaterMark = Math.max(this.highWaterMark, this.activeEntities.size());
+        this.engine.addObject(entity);
+        return entity;
+    }
+
+    /**
+     * This function removes an entity of the engine and puts it in the free list.
+     * @param entity: the entity (spawned by this pool)
+     * @return false if the entity was not spawned by this pool (or already despawned)
+     */
+    public boolean despawn(T entity) {
+        if (this.activeEntities.remove(entity) == null)
+            return false;
+
+        this.engine.removeObject(entity);
+
+        if (this.freeCount == this.freeEntities.length)
+            this.freeEntities = Arrays.copyOf(this.freeEntities, this.freeCount * 2);
+        this.freeEntities[this.freeCount++] = entity;
+        return true;
+    }
+
+    /**
+     * This function creates a new entity with the factory.
+     * @return the entity
+     */
+    private T create() {
+        T entity = this.factory.get();
+
+        // the state given by the factory, restored at each spawn
+        if (this.createdCount == 0) {
+            this.defaultGravityScale = entity.getGravityScale();
+            this.defaultImportant = entity.isImportant();
+            this.defaultTypeId = entity.getTypeId();
+        }
+
+        this.createdCount++;
+        return entity;
+    }
+
+    /**
+     * Returns the number of entities spawned (the occupancy of the pool).
+     * @return the number of entities in the engine
+     */
+    public int getActiveCount() {
+        return this.activeEntities.size();
+    }
+
+    /**
+     * Returns the number of entities in the free list.
+     * @return the number of entities ready to be reused
+     */
+    public int getFreeCount() {
+        return freeCount;
+    }
+
+    /**
+     * Returns the number of entities created by the pool (the capacity of the pool).
+     * @return the number of entities created
+     */
+    public int getCreatedCount() {
+        return createdCount;
+    }
+
+    /**
+     * Returns the maximum number of entities spawned at the same time since the creation of the pool.
+     * @return the high-water mark
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+}
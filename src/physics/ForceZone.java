@@ -0,0 +1,59 @@
+package physics;
+
+import javafx.scene.shape.Rectangle;
+
+/**
+ * This class represents a rectangular zone applying an acceleration on the entities overlapping it.
+ * A gravity zone is multiplied by the gravity scale of the entities, a wind zone is applied the same way
+ * on all the entities. The acceleration is added to the global gravity of the engine.
+ */
+public class ForceZone {
+
+    private final Rectangle area;                   /** The area of the zone. */
+    private final double accelerationX;             /** The acceleration in x in physics unit per second per second. */
+    private final double accelerationY;             /** The acceleration in y in physics unit per second per second. */
+    private final boolean gravity;                  /** If it's a gravity zone (multiplied by the gravity scale). */
+
+    /**
+     * Constructor.
+     * The zone can't be moved: to move a zone, remove it and add a new one.
+     * @param area: the area of the zone
+     * @param accelerationX: the acceleration in x
+     * @param accelerationY: the acceleration in y
+     * @param gravity: true for a gravity zone, false for a wind zone
+     */
+    public ForceZone(Rectangle area, double accelerationX, double accelerationY, boolean gravity) {
+        this.area = new Rectangle(area.getX(), area.getY(), area.getWidth(), area.getHeight());
+        this.accelerationX = accelerationX;
+        this.accelerationY = accelerationY;
+        this.gravity = gravity;
+    }
+
+    public double getX() {
+        return area.getX();
+    }
+
+    public double getY() {
+        return area.getY();
+    }
+
+    public double getWidth() {
+        return area.getWidth();
+    }
+
+    public double getHeight() {
+        return area.getHeight();
+    }
+
+    public double getAccelerationX() {
+        return accelerationX;
+    }
+
+    public double getAccelerationY() {
+        return accelerationY;
+    }
+
+    public boolean isGravity() {
+        return gravity;
+    }
+}
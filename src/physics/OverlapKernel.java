@@ -0,0 +1,82 @@
+package physics;
+
+/**
+ * This class tests the overlap of one box with many boxes stored in arrays (one array per bound).
+ * It's used by the broadphase of the engine and by the queries of the spatial index.
+ *
+ * The kernel returned by get() uses the Vector API (jdk.incubator.vector) to test several boxes at once
+ * when the module is present (run with --add-modules jdk.incubator.vector) and the class VectorOverlapKernel has
+ * been compiled (it's in the src-vector directory), and tests them one by one otherwise.
+ */
+public abstract class OverlapKernel {
+
+    private static final OverlapKernel INSTANCE = create();        /** The kernel used by the engine. */
+
+    /**
+     * Returns the kernel used by the engine.
+     * @return the vector kernel if the Vector API is available, the scalar kernel otherwise
+     */
+    public static OverlapKernel get() {
+        return INSTANCE;
+    }
+
+    /**
+     * This function writes the indexes of the boxes overlapping a box, in increasing order.
+     * @param minX: the left of the box
+     * @param minY: the top of the box
+     * @param maxX: the right of the box
+     * @param maxY: the bottom of the box
+     * @param minXs: the left of the boxes
+     * @param minYs: the top of the boxes
+     * @param maxXs: the right of the boxes
+     * @param maxYs: the bottom of the boxes
+     * @param from: the index of the first box to test
+     * @param to: the index after the last box to test
+     * @param touching: if the boxes only touching the box are returned too
+     * @param result: the array where the indexes are written (at least to - from long)
+     * @return the number of indexes written
+     */
+    public abstract int overlaps(double minX, double minY, double maxX, double maxY,
+                                 double[] minXs, double[] minYs, double[] maxXs, double[] maxYs,
+                                 int from, int to, boolean touching, int[] result);
+
+    /**
+     * This function tests the boxes one by one. It's used by the kernels for the boxes they can't batch.
+     * @see #overlaps(double, double, double, double, double[], double[], double[], double[], int, int, boolean, int[])
+     * @param count: the number of indexes already written in the result
+     * @return the number of indexes written in the result (with the ones already written)
+     */
+    protected static int overlapsScalar(double minX, double minY, double maxX, double maxY,
+                                        double[] minXs, double[] minYs, double[] maxXs, double[] maxYs,
+                                        int from, int to, boolean touching, int[] result, int count) {
+        if (touching) {
+            for (int i = from; i < to; i++)
+                if (minXs[i] <= maxX && maxXs[i] >= minX && minYs[i] <= maxY && maxYs[i] >= minY)
+                    result[count++] = i;
+        }
+        else {
+            for (int i = from; i < to; i++)
+                if (minXs[i] < maxX && maxXs[i] > minX && minYs[i] < maxY && maxYs[i] > minY)
+                    result[count++] = i;
+        }
+
+        return count;
+    }
+
+    /**
+     * This function creates the kernel: the vector one if the module of the Vector API is loaded.
+     * The vector kernel is loaded by reflection, so this class works without the module.
+     * @return the kernel
+     */
+    private static OverlapKernel create() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (OverlapKernel) Class.forName("physics.VectorOverlapKernel").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // use the scalar kernel
+            }
+        }
+
+        return new ScalarOverlapKernel();
+    }
+}
@@ -1,21 +1,36 @@
 package physics;
 
-import javafx.geometry.Point2D;
 import javafx.scene.shape.Rectangle;
+import physics.objects.DirtyListener;
+import physics.objects.ObjectLink;
 import physics.objects.PhysicEntity;
 import physics.objects.PhysicObject;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * This class represents the physics engine.
  * To use this class, add objects to the engine and update it. The update function of the class
  * updates all the objects for a delta (in second) and handles all the collisions between the objects.
- * When objects are in collision, their function called "collisionTriggeredOnSide" is used.
+ * When objects are in collision, their function called "collisionTriggeredOnSide" is used (or, with the typed
+ * dispatch, the handler of the pair of types of the objects, see setCollisionHandler).
  *
  * The engine can handle gravity. The PhysicObjects are considered as walls and the entities will be
  * stop in their fall by the objects. You can choose the direction of the gravity and it's value.
+ * The gravity is multiplied by the gravity scale of each entity, and force zones can add a gravity or a wind
+ * in some areas.
  *
  * IMPORTANT : The origin is the top-left corner.
  *
@@ -24,408 +39,2133 @@ import java.util.List;
  */
 public class PhysicsEngine implements Updatable {
 
+    private static final int HANDLE_SLOT_BITS = 20;                /** The number of bits of the slot in a handle. */
+    private static final int HANDLE_SLOT_MASK = (1 << HANDLE_SLOT_BITS) - 1;   /** The mask of the slot in a handle. */
+    private static final int MAX_GENERATION = (1 << (31 - HANDLE_SLOT_BITS)) - 1;   /** The maximum generation of a slot (then it restarts at 1). */
+
     protected List<PhysicObject> objects;                       /** All the objects handled by the engine. */
+    private List<PhysicObject> objectsView;                     /** The read-only view of the objects. */
+    private PhysicObject[] slotObjects = new PhysicObject[64];  /** The objects by slot of handle (null if the slot is free). */
+    private ObjectLink[] slotLinks = new ObjectLink[64];        /** The links to the objects by slot of handle (null if the slot is free). */
+    private int[] slotGenerations = new int[64];                /** The generation of each slot, changed each time the slot is reused. */
+    private int[] slotIndexes = new int[64];                    /** The index in the objects of each used slot, the next free slot of each free slot. */
+    private int slotsCount = 0;                                 /** The number of slots used at least once. */
+    private int firstFreeSlot = -1;                             /** The first free slot (-1 if there's none). */
+    private final List<PhysicObject> dirtyObjects = new ArrayList<>();  /** The objects changed since they have been refreshed. */
+    private final DirtyListener dirtyListener = this.dirtyObjects::add; /** The listener of the objects of the engine. */
     private boolean useGravity = false;                         /** If the engine use gravity or not. */
     private Direction gravityDirection = Direction.DOWN;        /** The direction of the gravity. */
     private Side sideToStopGravityOnCollision = Side.BOTTOM;    /** The side where we need to stop the gravity if there's a collision. */
+    private TileGrid tileGrid = null;                           /** The static layer of tiles (null if there's no tiles). */
+    private boolean[] updatedObjects = new boolean[0];          /** If the objects (by index) have been updated during the current update. */
+    private boolean[] collidingObjects = new boolean[0];        /** If the objects (by index) look for their collisions during the current update. */
+    private float[] objectDeltas = new float[0];                /** The delta applied on the objects (by index) during the current update. */
+    private int[] objectSubsteps = new int[0];                  /** The number of steps of the objects (by index) during the current update. */
+    private double substepThreshold = 0.5;                      /** The move of an entity, relatively to its smallest dimension, that needs a substep. */
+    private int maxSubsteps = 1;                                /** The maximum number of substeps of an entity (1 if the entities are never substepped). */
+    private PhysicObject[] substepCollisions = new PhysicObject[16];    /** The objects whose collision with the entity updated in substeps has been dispatched. */
+    private int substepCollisionsCount = 0;                     /** The number of objects in the substep collisions. */
+    private final List<ForceZone> forceZones = new ArrayList<>();                   /** The force zones of the engine. */
+    private final SpatialGrid<ForceZone> forceZonesIndex = new SpatialGrid<>(256);  /** The index of the areas of the force zones. */
+    private final List<ForceZone> forceZonesBuffer = new ArrayList<>();             /** The zones found for an entity. */
+    private final List<Sensor> sensors = new ArrayList<>();                         /** The sensors of the engine. */
+    private final List<PhysicEntity> sensorEntitiesBuffer = new ArrayList<>();      /** The entities found in the area of a sensor. */
+    private long[] sensorKeys = new long[16];                                       /** The handles (and indexes in the buffer) of the entities of a sensor. */
+    private int[] sensorHandles = new int[16];                                      /** The sorted handles of the entities of a sensor. */
+    private PhysicEntity[] sensorEntities = new PhysicEntity[16];                   /** The entities of a sensor in the order of their handles. */
+    private volatile SnapshotChannel[] snapshotChannels = new SnapshotChannel[0];   /** The channels publishing the state of the objects after each update (replaced when changed). */
+    private final ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<>();    /** The commands sent by the other threads. */
+    private final AtomicInteger queuedCommandsCount = new AtomicInteger();          /** The number of commands in the queue. */
+    private final AtomicLong droppedCommandsCount = new AtomicLong();               /** The number of commands dropped because the queue was full. */
+    private volatile int commandQueueCapacity = 1 << 16;                            /** The maximum number of commands in the queue. */
+    private volatile CommandOverflowPolicy commandOverflowPolicy = CommandOverflowPolicy.REJECT;   /** What to do with a command when the queue is full. */
+    private final Object snapshotChannelsLock = new Object();                       /** The lock of the changes of the channels. */
+    private long updatesCount = 0;                                                  /** The number of updates done. */
+    private boolean deferredCollisionEvents = false;                                /** If the collision functions are called after the update. */
+    private CollisionEventBuffer collisionEvents = new CollisionEventBuffer(256);  /** The collisions recorded during the update. */
+    private CollisionEventBuffer dispatchedCollisionEvents = new CollisionEventBuffer(256);    /** The collisions being dispatched. */
+    private Executor collisionEventsExecutor = null;                                /** The executor dispatching the collisions (null to dispatch them in the update). */
+    private CompletableFuture<Void> collisionEventsDispatch = null;                 /** The dispatch done by the executor. */
+    private final Map<Class<?>, List<CollisionListener>> collisionListeners = new HashMap<>();      /** The listeners of the collisions by type. */
+    private final Map<Class<?>, CollisionListener[]> collisionListenersByClass = new HashMap<>();   /** The listeners of each class of objects met. */
+    private final CollisionHandlerTable collisionHandlers = new CollisionHandlerTable();           /** The handlers of the collisions by pair of types. */
+    private boolean typedCollisionDispatch = false;                                                /** If the collisions are dispatched to the handlers instead of the objects. */
+    protected SpatialGrid<PhysicObject> spatialIndex = new SpatialGrid<>(64);   /** The index of the hit boxes of the objects. */
+    private double[] boundsMinX = new double[0];                /** The left of the hit boxes (by index) for the broadphase. */
+    private double[] boundsMinY = new double[0];                /** The top of the hit boxes (by index) for the broadphase. */
+    private double[] boundsMaxX = new double[0];                /** The right of the hit boxes (by index) for the broadphase. */
+    private double[] boundsMaxY = new double[0];                /** The bottom of the hit boxes (by index) for the broadphase. */
+    private long[] changedUpdates = new long[0];                /** The number of the first update published after the last change of the object at each index (for the snapshots). */
+    private int[] candidates = new int[0];                      /** The indexes of the objects found by the broadphase. */
+    private final List<PhysicObject> broadphaseBuffer = new ArrayList<>();  /** The objects found in the spatial index by the broadphase. */
+    private final Contact contact = new Contact();              /** The contact computed by the narrowphase of the update. */
+    private final Contact predictionContact = new Contact();    /** The contact computed by the predictions of collisions. */
+    private SpatialGrid<PhysicObject> predictionIndex = null;   /** The index of the swept hit boxes of the next update (created by the first prediction). */
+    private SpatialGrid<PhysicEntity> entityIndex = null;       /** The index of the hit boxes of the entities only, for the sensors (created by the first sensor). */
+    private final List<PhysicObject> predictionBuffer = new ArrayList<>();   /** The objects found by a prediction. */
+    private Side sweepSide = null;                              /** The side found by the last sweep. */
+    private boolean separatingEntities = false;                 /** If the entities in collision are separated. */
+    private long[] updatePriorities = new long[0];              /** The priorities (and indexes) of the entities of an update with a deadline. */
+    private long updateCost = 0;                                /** The average time of an update per entity updated, in nanoseconds. */
+    private long fixedUpdateCost = 0;                           /** The average time of an update for all the objects, in nanoseconds. */
+    private float maxDeferredDelay = 0.25f;                     /** The time after which an entity deferred is always updated. */
+    private int deferredObjectsCount = 0;                       /** The number of entities deferred by the last update. */
+    private int overloadedUpdatesCount = 0;                     /** The number of updates in a row that deferred entities. */
+    private int reorderInterval = 0;                            /** The number of updates between two reorderings of the objects (0 to never reorder them). */
+    private long[] reorderKeys = new long[0];                   /** The Morton codes (and slots) of the objects sorted by the reordering. */
+    private double[] reorderBounds = new double[0];             /** The bounds of the objects in their new order during a reordering. */
+    private long[] reorderBuffer = new long[0];                 /** The keys during a pass of the radix sort of a reordering. */
+    private final int[] reorderDigits = new int[257];           /** The number of keys with each digit during a pass of the radix sort. */
+    private long lastReorderNanos = 0;                          /** The time of the last reordering. */
+    private long totalReorderNanos = 0;                         /** The time of all the reorderings. */
+    private int lastReorderMovedObjects = 0;                    /** The number of objects moved by the last reordering. */
+
+    /**
+     * The value of the gravity for the engine.
+     * This value is add to the objects every seconds.
+     */
+    private float gravityValue = 7.f;
+
+    /**
+     * The constructor.
+     */
+    public PhysicsEngine() {
+        this.objects = new ArrayList<>();
+        this.objectsView = Collections.unmodifiableList(this.objects);
+    }
+
+    /**
+     * Constructor with a gravity value. Means that the engine will apply gravity on objects.
+     * @param gravityValue: the gravity value
+     * @param gravityDirection: the direction of the gravity
+     */
+    public PhysicsEngine(float gravityValue, Direction gravityDirection) {
+        this();
+        this.useGravity = true;
+        this.gravityValue = gravityValue;
+        setGravityDirection(gravityDirection);
+    }
+
+    /**
+     * The main function of the engine.
+     * This function updates all the objects and handles the collisions.
+     * It also applies the gravity and the force zones if the engine has to.
+     * Only the entities and the objects that moved (see PhysicObject.markDirty) look for their collisions, so two
+     * static objects touching each other don't collide.
+     * @param delta: the delta to apply (the time between this update and the previous one usually)
+     */
+    public void update(float delta) {
+        update(delta, false, 0);
+    }
+
+    /**
+     * This function updates the engine like update, but tries to finish before a deadline.
+     * The engine estimates the time needed per entity with the previous updates. If there's not enough time to
+     * update all the entities, the important entities and the ones with the best priority (see getUpdatePriority)
+     * are updated and the other ones are deferred: they don't move and don't look for their collisions during this
+     * update, but the objects updated can still collide with them at their last position. The time they missed
+     * is added to their next update. An entity deferred during more than the max deferred delay
+     * is always updated.
+     * @param delta: the delta to apply
+     * @param deadlineNanos: the time (of System.nanoTime) when the update should be done
+     * @return the number of entities deferred (0 if the engine had enough time)
+     */
+    public int updateWithDeadline(float delta, long deadlineNanos) {
+        update(delta, true, deadlineNanos);
+        return this.deferredObjectsCount;
+    }
+
+    /**
+     * The update of the engine.
+     * @param delta: the delta to apply
+     * @param withDeadline: if the update has a deadline
+     * @param deadlineNanos: the deadline (of System.nanoTime)
+     */
+    private void update(float delta, boolean withDeadline, long deadlineNanos) {
+
+        // the objects in the order of their positions (not counted in the time of the update used by the deadlines)
+        if (this.reorderInterval > 0 && this.updatesCount % this.reorderInterval == 0)
+            reorderObjects();
+
+        long start = System.nanoTime();
+
+        // the commands of the other threads
+        applyCommands();
+
+        if (this.updatedObjects.length < objects.size()) {
+            this.updatedObjects = new boolean[objects.size() * 2];
+            this.collidingObjects = new boolean[objects.size() * 2];
+            this.objectDeltas = new float[objects.size() * 2];
+            this.objectSubsteps = new int[objects.size() * 2];
+            this.updatePriorities = new long[objects.size() * 2];
+        }
+
+        // for each object -- delta of the update
+        for (int i = 0; i < objects.size(); i++) {
+            this.objectDeltas[i] = getObjectDelta(i, objects.get(i), delta);
+            this.updatedObjects[i] = this.objectDeltas[i] >= 0;
+        }
+
+        // the entities that can't be updated before the deadline
+        this.deferredObjectsCount = withDeadline ? deferEntities(deadlineNanos) : 0;
+        this.overloadedUpdatesCount = this.deferredObjectsCount > 0 ? this.overloadedUpdatesCount + 1 : 0;
+
+        long entitiesStart = System.nanoTime();
+        int updatedEntities = 0;
+        for (int i = 0; i < objects.size(); i++)
+            if (this.updatedObjects[i] && objects.get(i) instanceof PhysicEntity)
+                updatedEntities++;
+
+        // for each entity -- forces
+        applyForces();
+
+        // for each object -- update (the fast entities are updated later in several steps)
+        for (int i = 0; i < objects.size(); i++) {
+            this.objectSubsteps[i] = this.updatedObjects[i] ? getSubsteps(objects.get(i), this.objectDeltas[i]) : 1;
+            if (this.updatedObjects[i] && this.objectSubsteps[i] == 1)
+                objects.get(i).update(this.objectDeltas[i]);
+        }
+
+        // for each object changed -- bounds for the broadphase
+        long boundsStart = System.nanoTime();
+        for (int k = 0; k < this.dirtyObjects.size(); k++)
+            if (contains(this.dirtyObjects.get(k)))
+                updateBounds(getIndex(this.dirtyObjects.get(k)));
+        long boundsTime = System.nanoTime() - boundsStart;
+
+        // for each fast entity -- update and collisions with the other objects in several steps
+        for (int i = 0; i < objects.size(); i++)
+            if (this.objectSubsteps[i] > 1)
+                updateInSubsteps(i);
+
+        // the objects looking for their collisions: the entities and the other objects that moved, so the static
+        // objects at rest cost nothing (two of them touching each other are not reported)
+        boolean allColliding = true;
+        for (int i = 0; i < objects.size(); i++) {
+            PhysicObject object = objects.get(i);
+            this.collidingObjects[i] = this.updatedObjects[i] && (object instanceof PhysicEntity || object.isDirty());
+            allColliding &= this.collidingObjects[i];
+        }
+
+        // for each object looking for its collisions -- collisions (between the fast entities or between the other objects)
+        for (int i = 0; i < objects.size(); i++) {
+            if (!this.collidingObjects[i])
+                continue;
+
+            // the previous objects not looking for their collisions (the other ones have already been tested with this one)
+            if (!allColliding)
+                calculateCollisions(i, 0, i, true, false);
+
+            // the following objects
+            calculateCollisions(i, i + 1, objects.size(), false, false);
+        }
+
+        // for each entity -- collisions with the tiles
+        if (this.tileGrid != null)
+            for (int i = 0; i < objects.size(); i++)
+                if (this.updatedObjects[i] && this.objectSubsteps[i] == 1 && objects.get(i) instanceof PhysicEntity)
+                    calculateTileCollisions((PhysicEntity) objects.get(i), false);
+        long entitiesEnd = System.nanoTime();
+
+        // for each object changed -- spatial index
+        refreshDirtyObjects();
+
+        // the collisions recorded
+        if (this.deferredCollisionEvents)
+            dispatchCollisionEvents();
+
+        // the entities in the sensors
+        for (int i = 0; i < this.sensors.size(); i++)
+            updateSensor(this.sensors.get(i));
+
+        // the state of the objects for the other threads
+        this.updatesCount++;
+        SnapshotChannel[] channels = this.snapshotChannels;
+        for (int i = 0; i < channels.length; i++)
+            channels[i].publish(this.updatesCount, objects, this.changedUpdates);
+
+        // the time of the update: a part for all the objects and a part per entity updated
+        long fixedTime = (entitiesStart - start) + boundsTime + (System.nanoTime() - entitiesEnd);
+        this.fixedUpdateCost = this.fixedUpdateCost == 0 ? fixedTime : (this.fixedUpdateCost * 3 + fixedTime) / 4;
+        if (updatedEntities > 0) {
+            long cost = Math.max(1, (entitiesEnd - entitiesStart - boundsTime) / updatedEntities);
+            this.updateCost = this.updateCost == 0 ? cost : (this.updateCost * 3 + cost) / 4;
+        }
+    }
+
+    /**
+     * This function applies the commands in the queue, in the order they have been queued.
+     * The commands queued during this function are applied at the next update, so the other threads can't make it last forever.
+     */
+    private void applyCommands() {
+        int count = this.queuedCommandsCount.get();
+        for (int k = 0; k < count; k++) {
+            Command command = this.commands.poll();
+            if (command == null)
+                break;
+            this.queuedCommandsCount.decrementAndGet();
+
+            switch (command.type) {
+                case Command.ADD:
+                    addObject(command.object);
+                    break;
+                case Command.REMOVE:
+                    if (command.object != null)
+                        removeObject(command.object);
+                    else
+                        removeObject(command.handle);
+                    break;
+                case Command.VELOCITY:
+                    PhysicObject object = command.object != null ? command.object : getObject(command.handle);
+                    if (object instanceof PhysicEntity && contains(object))
+                        ((PhysicEntity) object).setVelocity(command.x, command.y);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * This function puts a command in the queue, according to the capacity and the overflow policy of the queue.
+     * @param command: the command
+     * @return if the command has been queued
+     */
+    private boolean queueCommand(Command command) {
+        if (this.queuedCommandsCount.incrementAndGet() > this.commandQueueCapacity) {
+            this.queuedCommandsCount.decrementAndGet();
+            if (this.commandOverflowPolicy == CommandOverflowPolicy.REJECT)
+                throw new IllegalStateException("The command queue of the engine is full (" + this.commandQueueCapacity + " commands).");
+
+            this.droppedCommandsCount.incrementAndGet();
+            return false;
+        }
+
+        this.commands.offer(command);
+        return true;
+    }
+
+    /**
+     * This function defers the entities that can't be updated before a deadline, according to the time of the
+     * previous updates (a part for all the objects and a part per entity updated).
+     * The entities are sorted by priority, reduced as the time they wait grows so the far entities are not all updated
+     * at the same time when they reach the max deferred delay. The key of an entity contains its priority, then the
+     * time it waits (the longest first, so the entities with the same priority take turns) and its index.
+     * @param deadlineNanos: the deadline
+     * @return the number of entities deferred
+     */
+    private int deferEntities(long deadlineNanos) {
+        int count = 0;
+        int alwaysUpdated = 0;
+        for (int i = 0; i < objects.size(); i++) {
+            if (!this.updatedObjects[i] || !(objects.get(i) instanceof PhysicEntity))
+                continue;
+
+            PhysicEntity entity = (PhysicEntity) objects.get(i);
+            if (entity.isImportant() || this.objectDeltas[i] > this.maxDeferredDelay)
+                alwaysUpdated++;
+            else {
+                double waiting = this.maxDeferredDelay > 0 ? Math.min(1, this.objectDeltas[i] / this.maxDeferredDelay) : 1;
+
+                // a positive float keeps its order as an int
+                float priority = (float) (Math.max(0, getUpdatePriority(i, entity)) * (1 - waiting));
+                long waitingRank = 4095 - (long) (waiting * 4095);
+                this.updatePriorities[count++] = ((long) Float.floatToIntBits(priority) << 32) | (waitingRank << HANDLE_SLOT_BITS) | i;
+            }
+        }
+
+        if (this.updateCost == 0)
+            return 0;
+
+        // at least one entity is updated, to keep measuring the time per entity
+        long capacity = Math.max(alwaysUpdated > 0 ? 0 : 1, (deadlineNanos - System.nanoTime() - this.fixedUpdateCost) / this.updateCost - alwaysUpdated);
+        if (capacity >= count)
+            return 0;
+
+        Arrays.sort(this.updatePriorities, 0, count);
+        for (int k = (int) capacity; k < count; k++) {
+            int i = (int) (this.updatePriorities[k] & HANDLE_SLOT_MASK);
+            ((PhysicEntity) objects.get(i)).setPendingDelta(this.objectDeltas[i]);
+            this.updatedObjects[i] = false;
+        }
+
+        return count - (int) capacity;
+    }
+
+    /**
+     * This function returns the number of steps needed to update an object: an entity moving more than the substep
+     * threshold multiplied by its smallest dimension is updated in several steps, so it can't go through an object.
+     * @param object: the object
+     * @param delta: the delta of the object
+     * @return the number of steps (1 for the static objects and the slow entities)
+     */
+    private int getSubsteps(PhysicObject object, float delta) {
+        if (this.maxSubsteps == 1 || !(object instanceof PhysicEntity))
+            return 1;
+
+        PhysicEntity entity = (PhysicEntity) object;
+        double move = Math.max(Math.abs(entity.getVelocityX()), Math.abs(entity.getVelocityY())) * delta;
+        double maxMove = this.substepThreshold * Math.min(object.getHitbox().getWidth(), object.getHitbox().getHeight());
+        if (move <= maxMove)
+            return 1;
+
+        return maxMove <= 0 ? this.maxSubsteps : (int) Math.min(this.maxSubsteps, Math.ceil(move / maxMove));
+    }
+
+    /**
+     * This function updates a fast entity in several steps. After each step, the collisions with the objects
+     * that are not updated in several steps and with the tiles are handled, so a collision function changing the
+     * velocity of the entity changes the next steps.
+     * A contact found again by the next steps (an entity stopped against a wall for example) is still resolved,
+     * but the collision functions are called only once per pair of objects during the update.
+     * @param i: the index of the entity
+     */
+    private void updateInSubsteps(int i) {
+        PhysicObject entity = objects.get(i);
+        float delta = this.objectDeltas[i] / this.objectSubsteps[i];
+
+        for (int step = 0; step < this.objectSubsteps[i]; step++) {
+            entity.update(delta);
+            updateBounds(i);
+            calculateCollisions(i, 0, objects.size(), false, true);
+
+            if (this.tileGrid != null) {
+                calculateTileCollisions((PhysicEntity) entity, true);
+                updateBounds(i);
+            }
+        }
+
+        Arrays.fill(this.substepCollisions, 0, this.substepCollisionsCount, null);
+        this.substepCollisionsCount = 0;
+    }
+
+    /**
+     * This function records the collision of the entity updated in substeps with an object.
+     * For the tiles, the object is the object of the type of the tiles.
+     * @param object: the other object
+     * @return true the first time the object is recorded during the substeps of the entity
+     */
+    private boolean recordSubstepCollision(PhysicObject object) {
+        for (int k = 0; k < this.substepCollisionsCount; k++)
+            if (this.substepCollisions[k] == object)
+                return false;
+
+        if (this.substepCollisionsCount == this.substepCollisions.length)
+            this.substepCollisions = Arrays.copyOf(this.substepCollisions, this.substepCollisionsCount * 2);
+        this.substepCollisions[this.substepCollisionsCount++] = object;
+        return true;
+    }
+
+    /**
+     * This function handles the collisions between an object looking for its collisions and the objects of a range of indexes
+     * whose bounds overlap or touch its bounds.
+     * The collisions between a fast entity (updated in several steps) and an other object are handled in the steps
+     * of the entity, so the other collisions are between two fast entities or between two other objects.
+     * @param i: the index of the object
+     * @param from: the first index of the range
+     * @param to: the index after the last one of the range
+     * @param onlyNotColliding: true to ignore the objects of the range looking for their collisions
+     * @param substep: true if it's a step of a fast entity (the fast entities of the range are ignored)
+     */
+    private void calculateCollisions(int i, int from, int to, boolean onlyNotColliding, boolean substep) {
+        while (from < to) {
+            int count = findCandidates(i, from, to);
+            from = to;
+
+            // look for collisions
+            for (int k = 0; k < count; k++) {
+                int j = this.candidates[k];
+                if (j == i || (onlyNotColliding && this.collidingObjects[j]))
+                    continue;
+                if (substep ? this.objectSubsteps[j] > 1 : (this.objectSubsteps[j] > 1) != (this.objectSubsteps[i] > 1))
+                    continue;
+
+                if (calculateContact(objects.get(i).getHitbox(), objects.get(j).getHitbox(), this.contact)) {
+                    handleCollision(objects.get(i), objects.get(j), this.contact, !substep || recordSubstepCollision(objects.get(j)));
+
+                    // the collision can have moved the objects, if this one moved we look again after the other one
+                    updateBounds(j);
+                    if (updateBounds(i)) {
+                        from = j + 1;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * This function finds the objects of a range of indexes whose bounds overlap or touch the bounds of an object
+     * with a query of the spatial index, so only the objects in the cells of the object are looked at.
+     * The indexes are written in the candidates in increasing order.
+     * @param i: the index of the object
+     * @param from: the first index of the range
+     * @param to: the index after the last one of the range
+     * @return the number of candidates
+     */
+    private int findCandidates(int i, int from, int to) {
+        this.broadphaseBuffer.clear();
+        this.spatialIndex.query(this.boundsMinX[i], this.boundsMinY[i], this.boundsMaxX[i], this.boundsMaxY[i], true, this.broadphaseBuffer);
+
+        int count = 0;
+        for (int k = 0; k < this.broadphaseBuffer.size(); k++) {
+            int j = getIndex(this.broadphaseBuffer.get(k));
+            if (j >= from && j < to)
+                this.candidates[count++] = j;
+        }
+        this.broadphaseBuffer.clear();
+
+        Arrays.sort(this.candidates, 0, count);
+        return count;
+    }
+
+    /**
+     * This function finds the entities in the area of a sensor with the index of the entities (only the overlap of
+     * the hit boxes is tested, the static objects are not in this index) and gives them to the sensor sorted by
+     * handle, so it finds the entities entered and exited.
+     * @param sensor: the sensor
+     */
+    private void updateSensor(Sensor sensor) {
+        this.sensorEntitiesBuffer.clear();
+        this.entityIndex.query(sensor.getX(), sensor.getY(), sensor.getWidth(), sensor.getHeight(), this.sensorEntitiesBuffer);
+
+        int count = this.sensorEntitiesBuffer.size();
+        if (this.sensorKeys.length < count) {
+            this.sensorKeys = new long[count * 2];
+            this.sensorHandles = new int[count * 2];
+            this.sensorEntities = new PhysicEntity[count * 2];
+        }
+
+        for (int k = 0; k < count; k++)
+            this.sensorKeys[k] = ((long) this.sensorEntitiesBuffer.get(k).getHandle() << 32) | k;
+
+        Arrays.sort(this.sensorKeys, 0, count);
+        for (int k = 0; k < count; k++) {
+            this.sensorHandles[k] = (int) (this.sensorKeys[k] >>> 32);
+            this.sensorEntities[k] = this.sensorEntitiesBuffer.get((int) this.sensorKeys[k]);
+        }
+        this.sensorEntitiesBuffer.clear();
+
+        sensor.updateEntities(this.sensorHandles, this.sensorEntities, count);
+        Arrays.fill(this.sensorEntities, 0, count, null);
+    }
+
+    /**
+     * This function copies the hit box of an object in the bounds used by the broadphase, and in the spatial index
+     * if it changed (so the broadphase finds the objects moved during the update at their new place).
+     * @param index: the index of the object
+     * @return if the bounds changed
+     */
+    private boolean updateBounds(int index) {
+        Rectangle hitbox = objects.get(index).getHitbox();
+        double minX = hitbox.getX(), minY = hitbox.getY();
+        double maxX = minX + hitbox.getWidth(), maxY = minY + hitbox.getHeight();
+        boolean changed = minX != this.boundsMinX[index] || minY != this.boundsMinY[index] || maxX != this.boundsMaxX[index] || maxY != this.boundsMaxY[index];
+
+        this.boundsMinX[index] = minX;
+        this.boundsMinY[index] = minY;
+        this.boundsMaxX[index] = maxX;
+        this.boundsMaxY[index] = maxY;
+        if (changed)
+            updateSpatialIndex(objects.get(index));
+
+        return changed;
+    }
+
+    /**
+     * This function puts the objects changed since the last refresh in the spatial index and marks them as refreshed.
+     */
+    private void refreshDirtyObjects() {
+        for (int k = 0; k < this.dirtyObjects.size(); k++) {
+            PhysicObject object = this.dirtyObjects.get(k);
+            if (contains(object)) {
+                this.slotLinks[object.getHandle() & HANDLE_SLOT_MASK].clearDirty();
+                updateSpatialIndex(object);
+                this.changedUpdates[getIndex(object)] = this.updatesCount + 1;
+            }
+        }
+
+        this.dirtyObjects.clear();
+    }
+
+    /**
+     * To sort the objects of the engine by the Morton code (Z-order) of the center of their hit boxes, so the objects
+     * close in the world are close in the list of the objects and in the bounds of the broadphase. The codes are
+     * computed on a grid with the size of the cells of the spatial index and the objects with the same code keep the
+     * order of their slots, so the order only depends on the objects and their positions: the collision functions are
+     * called in the same order for the same objects. The handles are not changed.
+     * As the objects don't move much between two reorderings, the keys are almost sorted: they are sorted in place
+     * with an insertion sort, and with a radix sort if too many objects moved. Both use arrays allocated once, so a
+     * reordering doesn't create objects.
+     * It must not be called during an update (from a collision function for example).
+     * @return the number of objects moved in the list
+     */
+    public int reorderObjects() {
+        long start = System.nanoTime();
+        int count = this.objects.size();
+        if (this.reorderKeys.length < count) {
+            this.reorderKeys = new long[count * 2];
+            this.reorderBounds = new double[count * 2];
+            this.reorderBuffer = new long[count * 2];
+        }
+
+        // the origin of the grid
+        double originX = Double.POSITIVE_INFINITY, originY = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            originX = Math.min(originX, (this.boundsMinX[i] + this.boundsMaxX[i]) / 2);
+            originY = Math.min(originY, (this.boundsMinY[i] + this.boundsMaxY[i]) / 2);
+        }
+
+        // the keys: the Morton code of the cell of the center, then the slot
+        double cellSize = this.spatialIndex.getCellSize();
+        for (int i = 0; i < count; i++) {
+            long cellX = getMortonCell((this.boundsMinX[i] + this.boundsMaxX[i]) / 2 - originX, cellSize);
+            long cellY = getMortonCell((this.boundsMinY[i] + this.boundsMaxY[i]) / 2 - originY, cellSize);
+            long code = interleaveBits(cellX) | (interleaveBits(cellY) << 1);
+            this.reorderKeys[i] = (code << HANDLE_SLOT_BITS) | (this.objects.get(i).getHandle() & HANDLE_SLOT_MASK);
+        }
+        if (!insertionSort(this.reorderKeys, count, 8L * count))
+            radixSort(this.reorderKeys, this.reorderBuffer, count);
+
+        int moved = 0;
+        for (int k = 0; k < count; k++)
+            if (this.slotIndexes[(int) (this.reorderKeys[k] & HANDLE_SLOT_MASK)] != k)
+                moved++;
+
+        // the objects, their indexes and their bounds in the new order
+        if (moved > 0) {
+            for (int k = 0; k < count; k++)
+                this.reorderBounds[k] = this.boundsMinX[this.slotIndexes[(int) (this.reorderKeys[k] & HANDLE_SLOT_MASK)]];
+            System.arraycopy(this.reorderBounds, 0, this.boundsMinX, 0, count);
+            for (int k = 0; k < count; k++)
+                this.reorderBounds[k] = this.boundsMinY[this.slotIndexes[(int) (this.reorderKeys[k] & HANDLE_SLOT_MASK)]];
+            System.arraycopy(this.reorderBounds, 0, this.boundsMinY, 0, count);
+            for (int k = 0; k < count; k++)
+                this.reorderBounds[k] = this.boundsMaxX[this.slotIndexes[(int) (this.reorderKeys[k] & HANDLE_SLOT_MASK)]];
+            System.arraycopy(this.reorderBounds, 0, this.boundsMaxX, 0, count);
+            for (int k = 0; k < count; k++)
+                this.reorderBounds[k] = this.boundsMaxY[this.slotIndexes[(int) (this.reorderKeys[k] & HANDLE_SLOT_MASK)]];
+            System.arraycopy(this.reorderBounds, 0, this.boundsMaxY, 0, count);
+
+            for (int k = 0; k < count; k++) {
+                int slot = (int) (this.reorderKeys[k] & HANDLE_SLOT_MASK);
+                if (this.slotIndexes[slot] != k)
+                    this.changedUpdates[k] = this.updatesCount + 1;
+                this.objects.set(k, this.slotObjects[slot]);
+                this.slotIndexes[slot] = k;
+            }
+        }
+
+        this.lastReorderMovedObjects = moved;
+        this.lastReorderNanos = System.nanoTime() - start;
+        this.totalReorderNanos += this.lastReorderNanos;
+        return moved;
+    }
+
+    /**
+     * To sort keys with an insertion sort, fast when they are almost sorted. The sort stops if it needs too many
+     * moves (the keys are then partly sorted).
+     * @param keys: the keys
+     * @param count: the number of keys to sort
+     * @param maxMoves: the maximum number of moves
+     * @return if the keys are sorted
+     */
+    private static boolean insertionSort(long[] keys, int count, long maxMoves) {
+        long moves = 0;
+        for (int i = 1; i < count; i++) {
+            long key = keys[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                j--;
+            }
+            keys[j + 1] = key;
+
+            moves += i - 1 - j;
+            if (moves > maxMoves)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * To sort positive keys with a radix sort (a pass per byte, the bytes equal for all the keys are skipped).
+     * @param keys: the keys
+     * @param buffer: an array of at least count keys used during the passes
+     * @param count: the number of keys to sort
+     */
+    private void radixSort(long[] keys, long[] buffer, int count) {
+        long[] from = keys, to = buffer;
+        for (int shift = 0; shift < 64; shift += 8) {
+            int[] digits = this.reorderDigits;
+            Arrays.fill(digits, 0);
+            for (int i = 0; i < count; i++)
+                digits[(int) ((from[i] >>> shift) & 0xFF) + 1]++;
+
+            if (digits[(int) ((from[0] >>> shift) & 0xFF) + 1] == count)
+                continue;
+
+            // the first place of each digit
+            for (int d = 0; d < 256; d++)
+                digits[d + 1] += digits[d];
+            for (int i = 0; i < count; i++)
+                to[digits[(int) ((from[i] >>> shift) & 0xFF)]++] = from[i];
+
+            long[] swap = from;
+            from = to;
+            to = swap;
+        }
+
+        if (from != keys)
+            System.arraycopy(from, 0, keys, 0, count);
+    }
+
+    /**
+     * Returns the cell of a coordinate for the Morton code (21 bits, so the code and the slot fit in a positive long).
+     * @param coordinate: the coordinate from the origin of the grid
+     * @param cellSize: the size of a cell
+     * @return the cell
+     */
+    private static long getMortonCell(double coordinate, double cellSize) {
+        return Math.min((1L << 21) - 1, Math.max(0, (long) (coordinate / cellSize)));
+    }
+
+    /**
+     * Returns the bits of a number of 21 bits separated by a 0 (the bit i goes to the bit 2i).
+     * @param value: the number
+     * @return the bits separated
+     */
+    private static long interleaveBits(long value) {
+        value &= 0x1FFFFFL;
+        value = (value | (value << 16)) & 0x0000FFFF0000FFFFL;
+        value = (value | (value << 8)) & 0x00FF00FF00FF00FFL;
+        value = (value | (value << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value | (value << 2)) & 0x3333333333333333L;
+        value = (value | (value << 1)) & 0x5555555555555555L;
+        return value;
+    }
+
+    /**
+     * Returns the index of an object of the engine in the list of the objects.
+     * @param object: the object (in the engine)
+     * @return the index
+     */
+    private int getIndex(PhysicObject object) {
+        return this.slotIndexes[object.getHandle() & HANDLE_SLOT_MASK];
+    }
+
+    /**
+     * This function puts the hit box of an object in the spatial index, and in the index of the entities if it's
+     * an entity and the engine has sensors.
+     * @param object: the object
+     */
+    private void updateSpatialIndex(PhysicObject object) {
+        Rectangle hitbox = object.getHitbox();
+        this.spatialIndex.update(object, hitbox.getX(), hitbox.getY(), hitbox.getWidth(), hitbox.getHeight());
+        if (this.entityIndex != null && object instanceof PhysicEntity)
+            this.entityIndex.update((PhysicEntity) object, hitbox.getX(), hitbox.getY(), hitbox.getWidth(), hitbox.getHeight());
+    }
+
+    /**
+     * This function applies the forces on the velocity of the entities updated: the global gravity multiplied by
+     * the gravity scale of the entity and the force zones overlapping the entity (found with the index of the zones).
+     */
+    private void applyForces() {
+        double gravityX = 0, gravityY = 0;
+        if (this.useGravity) {
+            switch (this.gravityDirection) {
+                case DOWN:
+                    gravityY = this.gravityValue;
+                    break;
+
+                case UP:
+                    gravityY = -this.gravityValue;
+                    break;
+
+                case RIGHT:
+                    gravityX = this.gravityValue;
+                    break;
+
+                case LEFT:
+                    gravityX = -this.gravityValue;
+                    break;
+            }
+        }
+
+        for (int i = 0; i < objects.size(); i++) {
+            if (!this.updatedObjects[i] || !(objects.get(i) instanceof PhysicEntity))
+                continue;
+
+            PhysicEntity entity = (PhysicEntity) objects.get(i);
+            double scale = entity.getGravityScale();
+            double accelerationX = gravityX * scale;
+            double accelerationY = gravityY * scale;
+
+            // the zones
+            if (this.forceZones.size() > 0) {
+                Rectangle hitbox = entity.getHitbox();
+                this.forceZonesBuffer.clear();
+                this.forceZonesIndex.query(hitbox.getX(), hitbox.getY(), hitbox.getWidth(), hitbox.getHeight(), this.forceZonesBuffer);
+
+                for (int j = 0; j < this.forceZonesBuffer.size(); j++) {
+                    ForceZone zone = this.forceZonesBuffer.get(j);
+                    double zoneScale = zone.isGravity() ? scale : 1;
+                    accelerationX += zone.getAccelerationX() * zoneScale;
+                    accelerationY += zone.getAccelerationY() * zoneScale;
+                }
+            }
+
+            if (accelerationX != 0 || accelerationY != 0)
+                entity.addVelocity(accelerationX * this.objectDeltas[i], accelerationY * this.objectDeltas[i]);
+        }
+    }
+
+    /**
+     * This function returns the delta to apply on an object during an update.
+     * By default all the objects are updated with the delta of the update (and the time they missed if they have
+     * been deferred). The engines can override it to update some objects less often (with the time they missed)
+     * or not at all.
+     * @param index: the index of the object in the engine
+     * @param object: the object
+     * @param delta: the delta of the update
+     * @return the delta to apply on the object, or a negative value if the object is not updated during this update
+     */
+    protected float getObjectDelta(int index, PhysicObject object, float delta) {
+        return delta + takePendingDelta(object);
+    }
+
+    /**
+     * This function returns the time not simulated yet of an entity and resets it.
+     * @param object: the object
+     * @return the time not simulated yet (0 for a static object)
+     */
+    protected float takePendingDelta(PhysicObject object) {
+        if (!(object instanceof PhysicEntity))
+            return 0;
+
+        float pendingDelta = ((PhysicEntity) object).getPendingDelta();
+        ((PhysicEntity) object).setPendingDelta(0);
+        return pendingDelta;
+    }
+
+    /**
+     * This function returns the priority of an entity for an update with a deadline: the entities with the
+     * lowest values are updated first. By default all the entities have the same priority, the engines can
+     * override it (the relative engine uses the distance to the reference objects).
+     * @param index: the index of the entity in the engine
+     * @param entity: the entity
+     * @return the priority (positive, lower is more urgent)
+     */
+    protected double getUpdatePriority(int index, PhysicEntity entity) {
+        return 0;
+    }
+
+    /**
+     * This function handles a collision between two objects.
+     * It stops the gravity and corrects the position of the entity if it falls on a static object, it separates
+     * the entities if the engine has to and it calls the collision functions of the objects.
+     * @param firstObject: the first object
+     * @param secondObject: the second object
+     * @param contact: the contact of the first object with the second one
+     * @param dispatch: false to only resolve the collision, without calling the collision functions
+     */
+    private void handleCollision(PhysicObject firstObject, PhysicObject secondObject, Contact contact, boolean dispatch) {
+        Side result = contact.getSide();
+
+        if (firstObject instanceof PhysicEntity && secondObject instanceof PhysicEntity) {
+            // two entities
+            if (this.separatingEntities)
+                separateEntities((PhysicEntity) firstObject, (PhysicEntity) secondObject, contact);
+        }
+        else if (this.useGravity) {
+            // an entity and a static object, we check if the collision implies to stop the gravity and we correct the position
+            if (secondObject instanceof PhysicEntity) {
+                if (getOppositeSide(result) == this.sideToStopGravityOnCollision || getOppositeSide(result) == Side.AROUND || getOppositeSide(result) == Side.IN)
+                    stopGravity((PhysicEntity) secondObject, firstObject, -contact.getNormalX(), -contact.getNormalY(), contact);
+            } else if (firstObject instanceof PhysicEntity) {
+                if (result == this.sideToStopGravityOnCollision || result == Side.AROUND || result == Side.IN)
+                    stopGravity((PhysicEntity) firstObject, secondObject, contact.getNormalX(), contact.getNormalY(), contact);
+            }
+        }
+
+        // a contact already dispatched during the substeps of the entity
+        if (!dispatch)
+            return;
+
+        // with the typed dispatch, nothing is called for a pair of types without handler
+        if (this.typedCollisionDispatch && !this.collisionHandlers.has(firstObject, secondObject)
+                && (!this.deferredCollisionEvents || this.collisionListeners.isEmpty()))
+            return;
+
+        // call the collision functions (or record the collision to call them after the update)
+        if (this.deferredCollisionEvents)
+            this.collisionEvents.add(firstObject, result, secondObject);
+        else if (this.typedCollisionDispatch)
+            this.collisionHandlers.dispatch(firstObject, result, getOppositeSide(result), secondObject);
+        else {
+            firstObject.collisionTriggeredOnSide(result, secondObject);
+            secondObject.collisionTriggeredOnSide(getOppositeSide(result), firstObject);
+        }
+    }
+
+    /**
+     * This function dispatches the collisions recorded during the update.
+     * The previous dispatch is finished first. Without executor the collisions are dispatched now, otherwise the
+     * executor dispatches them while the engine continues (the buffers of collisions are swapped).
+     */
+    private void dispatchCollisionEvents() {
+        waitCollisionEvents();
+
+        CollisionEventBuffer events = this.collisionEvents;
+        this.collisionEvents = this.dispatchedCollisionEvents;
+        this.dispatchedCollisionEvents = events;
+
+        if (events.size() == 0)
+            return;
+
+        if (this.collisionEventsExecutor == null)
+            dispatchCollisionEvents(events);
+        else
+            this.collisionEventsDispatch = CompletableFuture.runAsync(() -> dispatchCollisionEvents(events), this.collisionEventsExecutor);
+    }
+
+    /**
+     * This function calls the collision functions and the listeners for the collisions of a buffer, in the order
+     * where they have been found, and clears the buffer.
+     * @param events: the collisions
+     */
+    private void dispatchCollisionEvents(CollisionEventBuffer events) {
+        for (int i = 0; i < events.size(); i++) {
+            PhysicObject firstObject = events.getFirstObject(i);
+            PhysicObject secondObject = events.getSecondObject(i);
+            Side side = events.getSide(i);
+            Side oppositeSide = getOppositeSide(side);
+
+            if (this.typedCollisionDispatch)
+                this.collisionHandlers.dispatch(firstObject, side, oppositeSide, secondObject);
+            else {
+                firstObject.collisionTriggeredOnSide(side, secondObject);
+                secondObject.collisionTriggeredOnSide(oppositeSide, firstObject);
+            }
+
+            if (!this.collisionListeners.isEmpty()) {
+                for (CollisionListener listener : getCollisionListeners(firstObject.getClass()))
+                    listener.collisionTriggered(firstObject, side, secondObject);
+                for (CollisionListener listener : getCollisionListeners(secondObject.getClass()))
+                    listener.collisionTriggered(secondObject, oppositeSide, firstObject);
+            }
+        }
+
+        events.clear();
+    }
+
+    /**
+     * Returns the listeners of the collisions of the objects of a class (the listeners of its super types included).
+     * @param type: the class of the objects
+     * @return the listeners
+     */
+    private CollisionListener[] getCollisionListeners(Class<?> type) {
+        CollisionListener[] listeners = this.collisionListenersByClass.get(type);
+        if (listeners != null)
+            return listeners;
+
+        List<CollisionListener> result = new ArrayList<>();
+        for (Map.Entry<Class<?>, List<CollisionListener>> entry : this.collisionListeners.entrySet())
+            if (entry.getKey().isAssignableFrom(type))
+                result.addAll(entry.getValue());
+
+        listeners = result.toArray(new CollisionListener[0]);
+        this.collisionListenersByClass.put(type, listeners);
+        return listeners;
+    }
+
+    /**
+     * This function waits the end of the dispatch of the deferred collisions done by the executor.
+     * The exceptions thrown by the collision functions are thrown here.
+     */
+    public void waitCollisionEvents() {
+        if (this.collisionEventsDispatch != null) {
+            CompletableFuture<Void> dispatch = this.collisionEventsDispatch;
+            this.collisionEventsDispatch = null;
+            dispatch.join();
+        }
+    }
+
+    /**
+     * To defer the collision functions after the update.
+     * In this mode, the collisions are recorded during the detection and the collision functions and listeners
+     * are called at the end of the update, in the same order. So a slow collision function doesn't stop the
+     * detection and the objects can be added or removed in a collision function.
+     * For the collisions with the tiles, the object of the tile doesn't have the hit box of the tile anymore.
+     * @param deferredCollisionEvents: true to defer the collisions
+     */
+    public void setDeferredCollisionEvents(boolean deferredCollisionEvents) {
+        waitCollisionEvents();
+        this.deferredCollisionEvents = deferredCollisionEvents;
+    }
+
+    public boolean isDeferringCollisionEvents() {
+        return deferredCollisionEvents;
+    }
+
+    /**
+     * To dispatch the deferred collisions with an executor, so the game logic runs while the engine does the next
+     * update. The dispatch of an update is always finished before the dispatch of the next one starts.
+     * The collision functions must not change the engine or the objects updated by it while it's running.
+     * @param executor: the executor (null to dispatch the collisions at the end of the update)
+     */
+    public void setCollisionEventsExecutor(Executor executor) {
+        waitCollisionEvents();
+        this.collisionEventsExecutor = executor;
+    }
+
+    /**
+     * To add a listener of the deferred collisions of a type of objects (and its subtypes).
+     * @param type: the type of the objects
+     * @param listener: the listener
+     */
+    public void addCollisionListener(Class<? extends PhysicObject> type, CollisionListener listener) {
+        waitCollisionEvents();
+        this.collisionListeners.computeIfAbsent(type, key -> new ArrayList<>()).add(listener);
+        this.collisionListenersByClass.clear();
+    }
+
+    /**
+     * To remove a listener of the deferred collisions of a type of objects.
+     * @param type: the type of the objects
+     * @param listener: the listener
+     */
+    public void removeCollisionListener(Class<? extends PhysicObject> type, CollisionListener listener) {
+        waitCollisionEvents();
+        List<CollisionListener> listeners = this.collisionListeners.get(type);
+        if (listeners != null && listeners.remove(listener)) {
+            if (listeners.isEmpty())
+                this.collisionListeners.remove(type);
+            this.collisionListenersByClass.clear();
+        }
+    }
+
+    /**
+     * To set the handler of the collisions between the objects of two types (see PhysicObject.setTypeId).
+     * The handler is used with the typed dispatch (see setTypedCollisionDispatch) and receives the object of the
+     * first type first, whatever the order of the objects in the engine. There's one handler by pair of types:
+     * the handler of (A, B) replaces the one of (B, A).
+     * @param firstType: the type of the first object given to the handler
+     * @param secondType: the type of the second object given to the handler
+     * @param handler: the handler (null to remove the handler of the pair)
+     */
+    public void setCollisionHandler(int firstType, int secondType, CollisionHandler handler) {
+        waitCollisionEvents();
+        this.collisionHandlers.set(firstType, secondType, handler);
+    }
+
+    /**
+     * To remove the handler of the collisions between the objects of two types.
+     * @param firstType: the first type
+     * @param secondType: the second type
+     */
+    public void removeCollisionHandler(int firstType, int secondType) {
+        setCollisionHandler(firstType, secondType, null);
+    }
+
+    /**
+     * Returns the handler of the collisions between the objects of two types.
+     * @param firstType: the type of the first object given to the handler
+     * @param secondType: the type of the second object given to the handler
+     * @return the handler, or null if the pair doesn't have a handler in this order
+     */
+    public CollisionHandler getCollisionHandler(int firstType, int secondType) {
+        return this.collisionHandlers.get(firstType, secondType);
+    }
+
+    /**
+     * Returns the number of pairs of types with a collision handler.
+     * @return the number of handlers
+     */
+    public int getCollisionHandlersCount() {
+        return this.collisionHandlers.size();
+    }
+
+    /**
+     * To dispatch the collisions to the handlers of the pairs of types of the objects instead of the collision
+     * functions of the objects. The handler is found in a table with the type ids of the two objects and is called
+     * once per collision. The collisions of a pair without handler are skipped (not even recorded when the
+     * collisions are deferred, unless there are collision listeners). The reactions of the engine (gravity and
+     * separation of the entities) are not changed.
+     * @param typedCollisionDispatch: true to use the handlers
+     */
+    public void setTypedCollisionDispatch(boolean typedCollisionDispatch) {
+        waitCollisionEvents();
+        this.typedCollisionDispatch = typedCollisionDispatch;
+    }
+
+    public boolean isUsingTypedCollisionDispatch() {
+        return typedCollisionDispatch;
+    }
+
+    /**
+     * This function stops the gravity of an entity falling on a static object and puts the entity against the object.
+     * The entity is moved out of the object along the normal of the contact, or on the side of the gravity if
+     * one of them is in the other one.
+     * @param entity: the entity
+     * @param object: the static object
+     * @param normalX: the x of the normal of the contact, from the entity to the object
+     * @param normalY: the y of the normal of the contact, from the entity to the object
+     * @param contact: the contact
+     */
+    private void stopGravity(PhysicEntity entity, PhysicObject object, double normalX, double normalY, Contact contact) {
+
+        // stop velocity
+        if(this.sideToStopGravityOnCollision == Side.BOTTOM || this.sideToStopGravityOnCollision == Side.TOP)
+            entity.setVelocity(entity.getVelocityX(), 0);
+        else
+            entity.setVelocity(0, entity.getVelocityY());
+
+        // correct position
+        if (contact.getSide() != Side.IN && contact.getSide() != Side.AROUND) {
+            moveObject(entity, -normalX * contact.getDepth(), -normalY * contact.getDepth());
+            return;
+        }
+
+        Rectangle entityHitbox = entity.getHitbox();
+        Rectangle objectHitbox = object.getHitbox();
+        switch (this.sideToStopGravityOnCollision) {
+            case LEFT:
+                moveObject(entity, objectHitbox.getX() + objectHitbox.getWidth() - entityHitbox.getX(), 0);
+                break;
+
+            case RIGHT:
+                moveObject(entity, objectHitbox.getX() - entityHitbox.getWidth() - entityHitbox.getX(), 0);
+                break;
+
+            case BOTTOM:
+                moveObject(entity, 0, objectHitbox.getY() - entityHitbox.getHeight() - entityHitbox.getY());
+                break;
+
+            case TOP:
+                moveObject(entity, 0, objectHitbox.getY() + objectHitbox.getHeight() - entityHitbox.getY());
+                break;
+        }
+    }
+
+    /**
+     * This function separates two entities in collision: each one is moved of half the depth of the contact along
+     * the normal, and if they are getting closer they take the same velocity on the axis of the normal.
+     * @param firstEntity: the first entity
+     * @param secondEntity: the second entity
+     * @param contact: the contact of the first entity with the second one
+     */
+    private void separateEntities(PhysicEntity firstEntity, PhysicEntity secondEntity, Contact contact) {
+        double normalX = contact.getNormalX(), normalY = contact.getNormalY();
+        double halfDepth = contact.getDepth() / 2.d;
+        moveObject(firstEntity, -normalX * halfDepth, -normalY * halfDepth);
+        moveObject(secondEntity, normalX * halfDepth, normalY * halfDepth);
+
+        double firstVelocity = firstEntity.getVelocityX() * normalX + firstEntity.getVelocityY() * normalY;
+        double secondVelocity = secondEntity.getVelocityX() * normalX + secondEntity.getVelocityY() * normalY;
+        if (firstVelocity > secondVelocity) {
+            double velocity = (firstVelocity + secondVelocity) / 2.d;
+            firstEntity.addVelocity(normalX * (velocity - firstVelocity), normalY * (velocity - firstVelocity));
+            secondEntity.addVelocity(normalX * (velocity - secondVelocity), normalY * (velocity - secondVelocity));
+        }
+    }
+
+    /**
+     * This function moves the hit box of an object.
+     * @param object: the object
+     * @param x: the move in x
+     * @param y: the move in y
+     */
+    private static void moveObject(PhysicObject object, double x, double y) {
+        object.setPosition(object.getX() + x, object.getY() + y);
+    }
+
+    /**
+     * This function handles the collisions between an entity and the tiles under its hit box.
+     * The tiles are found by index arithmetic. The following tiles of the same type on a row are tested
+     * as one rectangle, so an entity moving on a floor of tiles is not stopped by the edges between the tiles.
+     * @param entity: the entity
+     * @param substep: true if it's a step of a fast entity (the collision functions are called once per type of tile)
+     */
+    private void calculateTileCollisions(PhysicEntity entity, boolean substep) {
+        Rectangle hitbox = entity.getHitbox();
+        double tileSize = this.tileGrid.getTileSize();
+
+        int firstColumn = Math.max(0, this.tileGrid.getColumn(hitbox.getX()));
+        int lastColumn = Math.min(this.tileGrid.getColumns() - 1, this.tileGrid.getColumn(hitbox.getX() + hitbox.getWidth()));
+        int firstRow = Math.max(0, this.tileGrid.getRow(hitbox.getY()));
+        int lastRow = Math.min(this.tileGrid.getRows() - 1, this.tileGrid.getRow(hitbox.getY() + hitbox.getHeight()));
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            int column = firstColumn;
+            while (column <= lastColumn) {
+                int type = this.tileGrid.getTile(column, row);
+                if (type == TileGrid.EMPTY) {
+                    column++;
+                    continue;
+                }
+
+                // the tiles of the same type on the row
+                int end = column + 1;
+                while (end <= lastColumn && this.tileGrid.getTile(end, row) == type)
+                    end++;
+
+                // move the object of the type on the tiles
+                PhysicObject tileObject = this.tileGrid.getTileObject(type);
+                Rectangle tileHitbox = tileObject.getHitbox();
+                tileHitbox.setX(this.tileGrid.getX() + column * tileSize);
+                tileHitbox.setY(this.tileGrid.getY() + row * tileSize);
+                tileHitbox.setWidth((end - column) * tileSize);
+                tileHitbox.setHeight(tileSize);
+
+                // the entity can have been moved by a previous collision
+                if (calculateContact(entity.getHitbox(), tileHitbox, this.contact))
+                    handleCollision(entity, tileObject, this.contact, !substep || recordSubstepCollision(tileObject));
+
+                column = end;
+            }
+        }
+    }
+
+    /**
+     * This function returns the opposite side of a side in parameter
+     * @param side: the side
+     * @return the opposite side
+     */
+    public Side getOppositeSide(Side side)
+    {
+        Side result = null;
+
+        switch (side){
+            case TOP:
+                result = Side.BOTTOM;
+                break;
+
+            case BOTTOM:
+                result = Side.TOP;
+                break;
+
+            case LEFT:
+                result = Side.RIGHT;
+                break;
+
+            case RIGHT:
+                result = Side.LEFT;
+                break;
+
+            case IN:
+                result = Side.AROUND;
+                break;
+
+            case AROUND:
+                result = Side.IN;
+                break;
+        }
+
+        return result;
+    }
+
+    /**
+     * This function computes the contact between two objects, on the axis where their hit boxes overlap the least.
+     * @param firstObject: the first object
+     * @param secondObject: the second object
+     * @param contact: the contact where the result is written (not changed if there's no contact)
+     * @return if the hit boxes overlap (hit boxes only touching each other don't)
+     */
+    public boolean calculateContact(PhysicObject firstObject, PhysicObject secondObject, Contact contact) {
+        if(firstObject == null || secondObject == null) return false;
+
+        return calculateContact(firstObject.getHitbox(), secondObject.getHitbox(), contact);
+    }
+
+    /**
+     * This function computes the contact between two hit boxes.
+     * @param firstHitbox: the first hit box
+     * @param secondHitbox: the second hit box
+     * @param contact: the contact where the result is written (not changed if there's no contact)
+     * @return if the hit boxes overlap
+     */
+    private static boolean calculateContact(Rectangle firstHitbox, Rectangle secondHitbox, Contact contact) {
+        if(firstHitbox == null || secondHitbox == null) return false;
+
+        return calculateContact(firstHitbox.getX(), firstHitbox.getY(), firstHitbox.getWidth(), firstHitbox.getHeight(),
+                secondHitbox.getX(), secondHitbox.getY(), secondHitbox.getWidth(), secondHitbox.getHeight(), contact);
+    }
+
+    /**
+     * This function computes the contact between two hit boxes: the overlap on each axis is computed once and
+     * the contact is on the axis of the minimum overlap (the vertical one if they are equal).
+     * @param x1: the x of the first hit box
+     * @param y1: the y of the first hit box
+     * @param w1: the width of the first hit box
+     * @param h1: the height of the first hit box
+     * @param x2: the x of the second hit box
+     * @param y2: the y of the second hit box
+     * @param w2: the width of the second hit box
+     * @param h2: the height of the second hit box
+     * @param contact: the contact where the result is written (not changed if there's no contact)
+     * @return if the hit boxes overlap
+     */
+    private static boolean calculateContact(double x1, double y1, double w1, double h1, double x2, double y2, double w2, double h2, Contact contact) {
+        double overlapX = Math.min(x1 + w1, x2 + w2) - Math.max(x1, x2);
+        double overlapY = Math.min(y1 + h1, y2 + h2) - Math.max(y1, y2);
+        if (overlapX <= 0 || overlapY <= 0)
+            return false;
+
+        Side side;
+        double normalX = 0, normalY = 0, depth;
+        if (overlapX < overlapY) {
+            normalX = x1 + w1 / 2.d < x2 + w2 / 2.d ? 1 : -1;
+            side = normalX > 0 ? Side.RIGHT : Side.LEFT;
+            depth = overlapX;
+        }
+        else {
+            normalY = y1 + h1 / 2.d < y2 + h2 / 2.d ? 1 : -1;
+            side = normalY > 0 ? Side.BOTTOM : Side.TOP;
+            depth = overlapY;
+        }
+
+        // a hit box in the other one
+        if (x1 > x2 && x1 + w1 < x2 + w2 && y1 > y2 && y1 + h1 < y2 + h2)
+            side = Side.IN;
+        else if (x2 > x1 && x2 + w2 < x1 + w1 && y2 > y1 && y2 + h2 < y1 + h1)
+            side = Side.AROUND;
+
+        contact.set(side, normalX, normalY, depth);
+        return true;
+    }
+
+    /**
+     * This function returns if there is a collision on this entity on the next update.
+     * For a collision with a tile, the object representing the type of the tile is returned.
+     * @param entity: the object
+     * @param delta: the delta to apply
+     * @return the object with which the collision will happen or null
+     */
+    public PhysicObject collisionOnNextUpdate(PhysicEntity entity, float delta) {
+
+        PhysicObject result = null;
+        Rectangle hitbox = entity.getHitbox();
+        double x = hitbox.getX() + entity.getVelocityX() * delta;
+        double y = hitbox.getY() + entity.getVelocityY() * delta;
+        double width = hitbox.getWidth(), height = hitbox.getHeight();
+
+        for (int i = 0; i < objects.size(); i++) {
+            PhysicObject temp = objects.get(i);
+            if(temp != entity) {
+                Rectangle tempHitbox = temp.getHitbox();
+                double tempX = tempHitbox.getX(), tempY = tempHitbox.getY();
+
+                // if it's an entity
+                if (temp instanceof PhysicEntity) {
+                    tempX += ((PhysicEntity) temp).getVelocityX() * delta;
+                    tempY += ((PhysicEntity) temp).getVelocityY() * delta;
+                }
+
+                if (calculateContact(x, y, width, height, tempX, tempY, tempHitbox.getWidth(), tempHitbox.getHeight(), this.predictionContact))
+                    result = temp;
+            }
+        }
+
+        // the tiles under the next hit box
+        if (result == null && this.tileGrid != null) {
+            double tileSize = this.tileGrid.getTileSize();
+            int firstColumn = Math.max(0, this.tileGrid.getColumn(x));
+            int lastColumn = Math.min(this.tileGrid.getColumns() - 1, this.tileGrid.getColumn(x + width));
+            int firstRow = Math.max(0, this.tileGrid.getRow(y));
+            int lastRow = Math.min(this.tileGrid.getRows() - 1, this.tileGrid.getRow(y + height));
+
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    int type = this.tileGrid.getTile(column, row);
+                    if (type != TileGrid.EMPTY && calculateContact(x, y, width, height, this.tileGrid.getX() + column * tileSize,
+                            this.tileGrid.getY() + row * tileSize, tileSize, tileSize, this.predictionContact))
+                        result = this.tileGrid.getTileObject(type);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * This function returns an object that will be in collision with an entity in the next update.
+     * @param handle: the handle of the entity
+     * @param delta: the delta of the next update
+     * @return the object in collision, or null if there's none or if the handle is not the one of an entity
+     */
+    public PhysicObject collisionOnNextUpdate(int handle, float delta) {
+        PhysicObject object = getObject(handle);
+        return object instanceof PhysicEntity ? collisionOnNextUpdate((PhysicEntity) object, delta) : null;
+    }
+
+    /**
+     * This function predicts the collisions of all the entities during the next update, in one pass.
+     * The swept hit box of each object (its hit box and its hit box after the next update) is put in an index,
+     * then each entity is swept against the objects whose swept hit box overlaps its own one and against the tiles.
+     * For each entity that will hit something, the first object hit is added to the result with the time of impact
+     * and the side of the entity. The forces and the collisions of the update are not taken into account.
+     * @param delta: the delta of the next update
+     * @param result: the buffer where the predictions are written (cleared first)
+     * @return the number of predictions
+     */
+    public int predictCollisions(float delta, CollisionPredictions result) {
+        result.clear();
+        if (this.predictionIndex == null)
+            this.predictionIndex = new SpatialGrid<>(this.spatialIndex.getCellSize());
+
+        // the swept hit boxes
+        for (int i = 0; i < objects.size(); i++) {
+            PhysicObject object = objects.get(i);
+            Rectangle hitbox = object.getHitbox();
+            double moveX = 0, moveY = 0;
+            if (object instanceof PhysicEntity) {
+                moveX = ((PhysicEntity) object).getVelocityX() * delta;
+                moveY = ((PhysicEntity) object).getVelocityY() * delta;
+            }
+
+            this.predictionIndex.update(object, hitbox.getX() + Math.min(0, moveX), hitbox.getY() + Math.min(0, moveY),
+                    hitbox.getWidth() + Math.abs(moveX), hitbox.getHeight() + Math.abs(moveY));
+        }
+
+        for (int i = 0; i < objects.size(); i++) {
+            if (!(objects.get(i) instanceof PhysicEntity))
+                continue;
+
+            PhysicEntity entity = (PhysicEntity) objects.get(i);
+            Rectangle hitbox = entity.getHitbox();
+            double moveX = entity.getVelocityX() * delta, moveY = entity.getVelocityY() * delta;
+            double sweptX = hitbox.getX() + Math.min(0, moveX), sweptY = hitbox.getY() + Math.min(0, moveY);
+            double sweptWidth = hitbox.getWidth() + Math.abs(moveX), sweptHeight = hitbox.getHeight() + Math.abs(moveY);
+
+            double firstTime = Double.POSITIVE_INFINITY;
+            PhysicObject firstObject = null;
+            Side firstSide = null;
+
+            // the objects
+            this.predictionBuffer.clear();
+            this.predictionIndex.query(sweptX, sweptY, sweptWidth, sweptHeight, this.predictionBuffer);
+            for (int k = 0; k < this.predictionBuffer.size(); k++) {
+                PhysicObject object = this.predictionBuffer.get(k);
+                if (object == entity)
+                    continue;
+
+                double relativeX = moveX, relativeY = moveY;
+                if (object instanceof PhysicEntity) {
+                    relativeX -= ((PhysicEntity) object).getVelocityX() * delta;
+                    relativeY -= ((PhysicEntity) object).getVelocityY() * delta;
+                }
+
+                Rectangle objectHitbox = object.getHitbox();
+                double time = sweep(hitbox.getX(), hitbox.getY(), hitbox.getWidth(), hitbox.getHeight(), relativeX, relativeY,
+                        objectHitbox.getX(), objectHitbox.getY(), objectHitbox.getWidth(), objectHitbox.getHeight());
+                if (time >= 0 && time < firstTime) {
+                    firstTime = time;
+                    firstObject = object;
+                    firstSide = this.sweepSide;
+                }
+            }
+
+            // the tiles under the swept hit box
+            if (this.tileGrid != null) {
+                double tileSize = this.tileGrid.getTileSize();
+                int firstColumn = Math.max(0, this.tileGrid.getColumn(sweptX));
+                int lastColumn = Math.min(this.tileGrid.getColumns() - 1, this.tileGrid.getColumn(sweptX + sweptWidth));
+                int firstRow = Math.max(0, this.tileGrid.getRow(sweptY));
+                int lastRow = Math.min(this.tileGrid.getRows() - 1, this.tileGrid.getRow(sweptY + sweptHeight));
+
+                for (int row = firstRow; row <= lastRow; row++) {
+                    for (int column = firstColumn; column <= lastColumn; column++) {
+                        int type = this.tileGrid.getTile(column, row);
+                        if (type == TileGrid.EMPTY)
+                            continue;
+
+                        double time = sweep(hitbox.getX(), hitbox.getY(), hitbox.getWidth(), hitbox.getHeight(), moveX, moveY,
+                                this.tileGrid.getX() + column * tileSize, this.tileGrid.getY() + row * tileSize, tileSize, tileSize);
+                        if (time >= 0 && time < firstTime) {
+                            firstTime = time;
+                            firstObject = this.tileGrid.getTileObject(type);
+                            firstSide = this.sweepSide;
+                        }
+                    }
+                }
+            }
+
+            if (firstObject != null)
+                result.add(entity, firstObject, firstTime * delta, firstSide);
+        }
+
+        return result.size();
+    }
+
+    /**
+     * This function sweeps a moving hit box against a fixed one and returns when they start to overlap.
+     * The side of the moving hit box where the impact happens is put in sweepSide.
+     * @param x1: the x of the moving hit box
+     * @param y1: the y of the moving hit box
+     * @param w1: the width of the moving hit box
+     * @param h1: the height of the moving hit box
+     * @param moveX: the move in x (relatively to the fixed hit box)
+     * @param moveY: the move in y (relatively to the fixed hit box)
+     * @param x2: the x of the fixed hit box
+     * @param y2: the y of the fixed hit box
+     * @param w2: the width of the fixed hit box
+     * @param h2: the height of the fixed hit box
+     * @return the time of impact between 0 and 1 (0 if they already overlap), or -1 if there's no impact during the move
+     */
+    private double sweep(double x1, double y1, double w1, double h1, double moveX, double moveY, double x2, double y2, double w2, double h2) {
+        // already in collision
+        if (calculateContact(x1, y1, w1, h1, x2, y2, w2, h2, this.predictionContact)) {
+            this.sweepSide = this.predictionContact.getSide();
+            return 0;
+        }
+
+        // the times when the hit boxes start and stop to overlap on each axis
+        double entryX, exitX, entryY, exitY;
+        if (moveX > 0) {
+            entryX = (x2 - (x1 + w1)) / moveX;
+            exitX = (x2 + w2 - x1) / moveX;
+        } else if (moveX < 0) {
+            entryX = (x2 + w2 - x1) / moveX;
+            exitX = (x2 - (x1 + w1)) / moveX;
+        } else {
+            if (x1 + w1 <= x2 || x1 >= x2 + w2)
+                return -1;
+            entryX = Double.NEGATIVE_INFINITY;
+            exitX = Double.POSITIVE_INFINITY;
+        }
+
+        if (moveY > 0) {
+            entryY = (y2 - (y1 + h1)) / moveY;
+            exitY = (y2 + h2 - y1) / moveY;
+        } else if (moveY < 0) {
+            entryY = (y2 + h2 - y1) / moveY;
+            exitY = (y2 - (y1 + h1)) / moveY;
+        } else {
+            if (y1 + h1 <= y2 || y1 >= y2 + h2)
+                return -1;
+            entryY = Double.NEGATIVE_INFINITY;
+            exitY = Double.POSITIVE_INFINITY;
+        }
+
+        // they overlap when they overlap on the two axes
+        double entry = Math.max(entryX, entryY);
+        double exit = Math.min(exitX, exitY);
+        if (entry >= exit || entry < 0 || entry > 1)
+            return -1;
+
+        if (entryX > entryY)
+            this.sweepSide = moveX > 0 ? Side.RIGHT : Side.LEFT;
+        else
+            this.sweepSide = moveY > 0 ? Side.BOTTOM : Side.TOP;
+
+        return entry;
+    }
+
+    /**
+     * This function returns all the objects around the object in parameter with a perimeter.
+     * The objects are found with the spatial index (see getObjectsIn).
+     * @param object: the object
+     * @param perimeter: the perimeter around the object
+     * @return the objects around
+     */
+    public List<PhysicObject> getObjectsAround(PhysicObject object, int perimeter) {
+        List<PhysicObject> result = new ArrayList<>();
+        getObjectsIn(
+                object.getHitbox().getX() - perimeter,
+                object.getHitbox().getY() - perimeter,
+                object.getHitbox().getWidth() + perimeter * 2,
+                object.getHitbox().getHeight() + perimeter * 2,
+                result
+        );
+
+        result.remove(object);
+        return result;
+    }
 
     /**
-     * The value of the gravity for the engine.
-     * This value is add to the objects every seconds.
+     * This function returns all the objects around an object with a perimeter.
+     * @param handle: the handle of the object
+     * @param perimeter: the perimeter around the object
+     * @return the objects around (empty if the handle is not valid)
      */
-    private float gravityValue = 7.f;
+    public List<PhysicObject> getObjectsAround(int handle, int perimeter) {
+        PhysicObject object = getObject(handle);
+        return object == null ? new ArrayList<>() : getObjectsAround(object, perimeter);
+    }
 
     /**
-     * The constructor.
+     * To add a physic object in the engine.
+     * The engine gives a handle to the object: an integer identifying it while it's in the engine, usable with
+     * the functions of the engine taking a handle. When the object is removed its handle becomes invalid, and it's
+     * never given to another object before its slot has been reused about two thousand times.
+     * An object can only be in one engine at a time.
+     * @param object: the object to add
+     * @return the handle of the object (its current handle if it's already in the engine, NO_HANDLE for null)
+     * @throws IllegalStateException if the object is in another engine
      */
-    public PhysicsEngine() {
-        this.objects = new ArrayList<>();
+    public int addObject(PhysicObject object) {
+        if(object == null)
+            return PhysicObject.NO_HANDLE;
+        if(contains(object))
+            return object.getHandle();
+        if (this.firstFreeSlot < 0 && this.slotsCount > HANDLE_SLOT_MASK)
+            throw new IllegalStateException("The engine can't handle more than " + (HANDLE_SLOT_MASK + 1) + " objects.");
+        ObjectLink link = object.attach(this.dirtyListener);
+
+        // take a free slot or a new one
+        int slot;
+        if (this.firstFreeSlot >= 0) {
+            slot = this.firstFreeSlot;
+            this.firstFreeSlot = this.slotIndexes[slot];
+        }
+        else {
+            if (this.slotsCount == this.slotObjects.length) {
+                this.slotObjects = Arrays.copyOf(this.slotObjects, this.slotsCount * 2);
+                this.slotLinks = Arrays.copyOf(this.slotLinks, this.slotsCount * 2);
+                this.slotGenerations = Arrays.copyOf(this.slotGenerations, this.slotsCount * 2);
+                this.slotIndexes = Arrays.copyOf(this.slotIndexes, this.slotsCount * 2);
+            }
+            slot = this.slotsCount++;
+        }
+
+        this.slotGenerations[slot] = this.slotGenerations[slot] % MAX_GENERATION + 1;
+        this.slotObjects[slot] = object;
+        this.slotLinks[slot] = link;
+        this.slotIndexes[slot] = this.objects.size();
+        link.setHandle((this.slotGenerations[slot] << HANDLE_SLOT_BITS) | slot);
+
+        this.objects.add(object);
+
+        // the bounds and the spatial index
+        if (this.boundsMinX.length < this.objects.size()) {
+            int length = Math.max(16, this.objects.size() * 2);
+            this.boundsMinX = Arrays.copyOf(this.boundsMinX, length);
+            this.boundsMinY = Arrays.copyOf(this.boundsMinY, length);
+            this.boundsMaxX = Arrays.copyOf(this.boundsMaxX, length);
+            this.boundsMaxY = Arrays.copyOf(this.boundsMaxY, length);
+            this.changedUpdates = Arrays.copyOf(this.changedUpdates, length);
+            this.candidates = new int[length];
+        }
+        this.changedUpdates[this.objects.size() - 1] = this.updatesCount + 1;
+        updateBounds(this.objects.size() - 1);
+        updateSpatialIndex(object);
+        return object.getHandle();
     }
 
     /**
-     * Constructor with a gravity value. Means that the engine will apply gravity on objects.
-     * @param gravityValue: the gravity value
-     * @param gravityDirection: the direction of the gravity
+     * To remove a physic object of the engine.
+     * @param object: the object to remove
      */
-    public PhysicsEngine(float gravityValue, Direction gravityDirection) {
-        this.useGravity = true;
-        this.gravityValue = gravityValue;
-        setGravityDirection(gravityDirection);
+    public void removeObject(PhysicObject object) {
+        if(contains(object))
+            removeObject(object.getHandle());
     }
 
     /**
-     * The main function of the engine.
-     * This function updates all the objects and handles the collisions.
-     * It also applies the gravity if the engine has to.
-     * @param delta: the delta to apply (the time between this update and the previous one usually)
+     * To remove a physic object of the engine with its handle, in constant time.
+     * The last object of the engine takes the place of the removed one in the list of the objects.
+     * @param handle: the handle of the object
+     * @return false if the handle is not valid (the object has already been removed for instance)
      */
-    public void update(float delta) {
+    public boolean removeObject(int handle) {
+        int slot = getSlot(handle);
+        if (slot < 0)
+            return false;
+
+        PhysicObject object = this.slotObjects[slot];
+        int index = this.slotIndexes[slot];
+        int lastIndex = this.objects.size() - 1;
+
+        // the last object takes the place of the removed one
+        PhysicObject lastObject = this.objects.get(lastIndex);
+        this.objects.set(index, lastObject);
+        this.slotIndexes[lastObject.getHandle() & HANDLE_SLOT_MASK] = index;
+        this.objects.remove(lastIndex);
+        this.boundsMinX[index] = this.boundsMinX[lastIndex];
+        this.boundsMinY[index] = this.boundsMinY[lastIndex];
+        this.boundsMaxX[index] = this.boundsMaxX[lastIndex];
+        this.boundsMaxY[index] = this.boundsMaxY[lastIndex];
+        this.changedUpdates[index] = this.updatesCount + 1;
+
+        // free the slot
+        this.slotLinks[slot].detach();
+        this.slotObjects[slot] = null;
+        this.slotLinks[slot] = null;
+        this.slotIndexes[slot] = this.firstFreeSlot;
+        this.firstFreeSlot = slot;
+
+        this.spatialIndex.remove(object);
+        if (this.entityIndex != null && object instanceof PhysicEntity)
+            this.entityIndex.remove((PhysicEntity) object);
+        if (this.predictionIndex != null)
+            this.predictionIndex.remove(object);
+        return true;
+    }
 
-        // for each object -- gravity and update
-        for (int i = 0; i < objects.size(); i++) {
+    /**
+     * Returns the object of a handle.
+     * @param handle: the handle
+     * @return the object, or null if the handle is not valid
+     */
+    public PhysicObject getObject(int handle) {
+        int slot = getSlot(handle);
+        return slot < 0 ? null : this.slotObjects[slot];
+    }
 
-            // apply gravity if it's an entity
-            if (this.useGravity && objects.get(i) instanceof PhysicEntity) {
-                switch (this.gravityDirection) {
-                    case DOWN:
-                        ((PhysicEntity) objects.get(i)).addVelocity(new Point2D(0, this.gravityValue * delta));
-                        break;
+    /**
+     * Returns if a handle is the handle of an object in the engine.
+     * A handle of a removed object is not valid anymore.
+     * @param handle: the handle
+     * @return if the handle is valid
+     */
+    public boolean isValid(int handle) {
+        return getSlot(handle) >= 0;
+    }
 
-                    case UP:
-                        ((PhysicEntity) objects.get(i)).subtractVelocity(new Point2D(0, this.gravityValue * delta));
-                        break;
+    /**
+     * Returns if an object is in the engine, in constant time.
+     * @param object: the object
+     * @return if the object is in the engine
+     */
+    public boolean contains(PhysicObject object) {
+        if (object == null)
+            return false;
 
-                    case RIGHT:
-                        ((PhysicEntity) objects.get(i)).addVelocity(new Point2D(this.gravityValue * delta, 0));
-                        break;
+        int slot = getSlot(object.getHandle());
+        return slot >= 0 && this.slotObjects[slot] == object;
+    }
 
-                    case LEFT:
-                        ((PhysicEntity) objects.get(i)).subtractVelocity(new Point2D(this.gravityValue * delta, 0));
-                        break;
-                }
-            }
+    /**
+     * Returns the slot of a handle.
+     * @param handle: the handle
+     * @return the slot, or -1 if the handle is not valid
+     */
+    private int getSlot(int handle) {
+        int slot = handle & HANDLE_SLOT_MASK;
+        if (handle <= 0 || slot >= this.slotsCount || this.slotObjects[slot] == null || this.slotGenerations[slot] != handle >>> HANDLE_SLOT_BITS)
+            return -1;
 
-            // update it
-            objects.get(i).update(delta);
-        }
+        return slot;
+    }
 
-        // for each object -- collisions
-        for (int i = 0; i < objects.size(); i++) {
-            // look for collisions
-            for (int j = i + 1; j < objects.size(); j++) {
-
-                Side result = calculateCollision(objects.get(i), objects.get(j));
-                if (result != null) {
-
-                    // if we use gravity
-                    if(this.useGravity) {
-                        // if there's one entity at least
-                        if (objects.get(i) instanceof PhysicEntity || objects.get(j) instanceof PhysicEntity) {
-
-                            // if the objects are not an entity, we check if the collision implies to stop the gravity and we correct the position
-                            if (!(objects.get(i) instanceof PhysicEntity)) {
-                                if (getOppositeSide(result) == this.sideToStopGravityOnCollision || getOppositeSide(result) == Side.AROUND || getOppositeSide(result) == Side.IN) {
-
-                                    // stop velocity
-                                    if(this.sideToStopGravityOnCollision == Side.BOTTOM || this.sideToStopGravityOnCollision == Side.TOP)
-                                        ((PhysicEntity) objects.get(j)).setVelocity(new Point2D(((PhysicEntity) objects.get(j)).getVelocity().getX(), 0));
-                                    else
-                                        ((PhysicEntity) objects.get(j)).setVelocity(new Point2D(0, ((PhysicEntity) objects.get(j)).getVelocity().getY()));
-
-                                    // correct position
-                                    switch (this.sideToStopGravityOnCollision) {
-                                        case LEFT:
-                                            objects.get(j).setPosition(new Point2D(objects.get(i).getPosition().getX() + objects.get(i).getHitbox().getWidth(), objects.get(j).getPosition().getY()));
-                                            break;
-
-                                        case RIGHT:
-                                            objects.get(j).setPosition(new Point2D(objects.get(i).getPosition().getX() - objects.get(j).getHitbox().getWidth(), objects.get(j).getPosition().getY()));
-                                            break;
-
-                                        case BOTTOM:
-                                            objects.get(j).setPosition(new Point2D(objects.get(j).getPosition().getX(), objects.get(i).getPosition().getY() - objects.get(j).getHitbox().getHeight()));
-                                            break;
-
-                                        case TOP:
-                                            objects.get(j).setPosition(new Point2D(objects.get(j).getPosition().getX(), objects.get(i).getPosition().getY() + objects.get(i).getHitbox().getHeight()));
-                                            break;
-                                    }
-                                }
-                            } else if (!(objects.get(j) instanceof PhysicEntity)) {
-                                if (result == this.sideToStopGravityOnCollision || result == Side.AROUND || result == Side.IN) {
-
-                                    // stop velocity
-                                    if(this.sideToStopGravityOnCollision == Side.BOTTOM || this.sideToStopGravityOnCollision == Side.TOP)
-                                        ((PhysicEntity) objects.get(i)).setVelocity(new Point2D(((PhysicEntity) objects.get(i)).getVelocity().getX(), 0));
-                                    else
-                                        ((PhysicEntity) objects.get(i)).setVelocity(new Point2D(0, ((PhysicEntity) objects.get(i)).getVelocity().getY()));
-
-                                    // correct position
-                                    switch (this.sideToStopGravityOnCollision) {
-                                        case LEFT:
-                                            objects.get(i).setPosition(new Point2D(objects.get(j).getPosition().getX() + objects.get(j).getHitbox().getWidth(), objects.get(i).getPosition().getY()));
-                                            break;
-
-                                        case RIGHT:
-                                            objects.get(i).setPosition(new Point2D(objects.get(j).getPosition().getX() - objects.get(i).getHitbox().getWidth(), objects.get(i).getPosition().getY()));
-                                            break;
-
-                                        case BOTTOM:
-                                            objects.get(i).setPosition(new Point2D(objects.get(i).getPosition().getX(), objects.get(j).getPosition().getY() - objects.get(i).getHitbox().getHeight()));
-                                            break;
-
-                                        case TOP:
-                                            objects.get(i).setPosition(new Point2D(objects.get(i).getPosition().getX(), objects.get(j).getPosition().getY() + objects.get(j).getHitbox().getHeight()));
-                                            break;
-                                    }
-                                }
-                            }
-                        }
-                    }
+    /**
+     * To create a pool of entities for this engine, to spawn and despawn entities without creating objects.
+     * @param factory: the function creating a new entity
+     * @param initialSize: the number of entities created now
+     * @param <T> the type of the entities
+     * @return the pool
+     */
+    public <T extends PhysicEntity> EntityPool<T> createPool(Supplier<T> factory, int initialSize) {
+        return createPool(factory, null, initialSize);
+    }
 
-                    // call the collision functions
-                    objects.get(i).collisionTriggeredOnSide(result, objects.get(j));
-                    objects.get(j).collisionTriggeredOnSide(getOppositeSide(result), objects.get(i));
-                }
-            }
-        }
+    /**
+     * To create a pool of entities for this engine, to spawn and despawn entities without creating objects.
+     * @param factory: the function creating a new entity
+     * @param resetter: the function resetting the state of an entity when it's spawned (can be null)
+     * @param initialSize: the number of entities created now
+     * @param <T> the type of the entities
+     * @return the pool
+     */
+    public <T extends PhysicEntity> EntityPool<T> createPool(Supplier<T> factory, Consumer<T> resetter, int initialSize) {
+        if (factory == null || initialSize < 0)
+            throw new IllegalArgumentException("The pool needs a factory and a positive initial size.");
+
+        return new EntityPool<>(this, factory, resetter, initialSize);
     }
 
     /**
-     * This function returns the opposite side of a side in parameter
-     * @param side: the side
-     * @return the opposite side
+     * This function adds to the result the objects whose hit box overlaps an area, using the spatial index.
+     * The index is refreshed at the end of each update and when an object is added, so an object moved
+     * by hand since the last update is found at its previous position.
+     * @param x: the x of the area
+     * @param y: the y of the area
+     * @param width: the width of the area
+     * @param height: the height of the area
+     * @param result: the list where the objects are added (not cleared)
      */
-    public Side getOppositeSide(Side side)
-    {
-        Side result = null;
+    public void getObjectsIn(double x, double y, double width, double height, List<PhysicObject> result) {
+        this.spatialIndex.query(x, y, width, height, result);
+    }
 
-        switch (side){
-            case TOP:
-                result = Side.BOTTOM;
-                break;
+    /**
+     * To change the size of the cells of the spatial index. The index is rebuilt.
+     * @param cellSize: the size of a cell (about the size of the common objects)
+     */
+    public void setSpatialIndexCellSize(double cellSize) {
+        this.spatialIndex = new SpatialGrid<>(cellSize);
+        if (this.entityIndex != null)
+            this.entityIndex = new SpatialGrid<>(cellSize);
+        for (PhysicObject object : this.objects)
+            updateSpatialIndex(object);
+    }
 
-            case BOTTOM:
-                result = Side.TOP;
-                break;
+    /**
+     * Getter of all the objects of the engine.
+     * @return all the objects managed by the engine (read-only, use addObject and removeObject)
+     */
+    public List<PhysicObject> getObjects() {
+        return objectsView;
+    }
 
-            case LEFT:
-                result = Side.RIGHT;
-                break;
+    /**
+     * Returns the objects of the engine with a specific name.
+     * @param name: the name
+     * @return the list of objects
+     */
+    public List<PhysicObject> getObjectsByName(String name) {
+        List<PhysicObject> result = new ArrayList<>();
 
-            case RIGHT:
-                result = Side.LEFT;
-                break;
+        for (PhysicObject object : this.objects)
+            if(object.getName().equals(name))
+                result.add(object);
 
-            case IN:
-                result = Side.AROUND;
-                break;
+        return result;
+    }
 
-            case AROUND:
-                result = Side.IN;
-                break;
+    public TileGrid getTileGrid() {
+        return tileGrid;
+    }
+
+    /**
+     * To set the static layer of tiles of the engine.
+     * The entities are stopped by the tiles like by the other static objects.
+     * @param tileGrid: the grid (null to remove it)
+     */
+    public void setTileGrid(TileGrid tileGrid) {
+        this.tileGrid = tileGrid;
+    }
+
+    /**
+     * To add a force zone in the engine.
+     * @param zone: the zone
+     */
+    public void addForceZone(ForceZone zone) {
+        if (zone != null && !this.forceZonesIndex.contains(zone)) {
+            this.forceZones.add(zone);
+            this.forceZonesIndex.insert(zone, zone.getX(), zone.getY(), zone.getWidth(), zone.getHeight());
         }
+    }
 
-        return result;
+    /**
+     * To remove a force zone of the engine.
+     * @param zone: the zone
+     */
+    public void removeForceZone(ForceZone zone) {
+        if (zone != null && this.forceZones.remove(zone))
+            this.forceZonesIndex.remove(zone);
     }
 
     /**
-     * This function gets the collisions between two objects.
-     * @param firstObject: the first object
-     * @param secondObject: the second object
-     * @return null if there is no collision or the side of the first object where the collision happened
+     * Getter of the force zones of the engine.
+     * @return the force zones
+     */
+    public List<ForceZone> getForceZones() {
+        return Collections.unmodifiableList(forceZones);
+    }
+
+    /**
+     * To add a sensor. The entities in its area are found at the end of each update.
+     * The first sensor creates an index of the entities only, so the sensors don't test the static objects.
+     * @param sensor: the sensor
      */
-    private Side calculateCollision(PhysicObject firstObject, PhysicObject secondObject) {
-        if(firstObject == null || secondObject == null) return null;
+    public void addSensor(Sensor sensor) {
+        if (sensor == null || this.sensors.contains(sensor))
+            return;
+
+        // the index of the entities, kept up to date from the first sensor
+        if (this.entityIndex == null) {
+            this.entityIndex = new SpatialGrid<>(this.spatialIndex.getCellSize());
+            for (PhysicObject object : this.objects) {
+                Rectangle hitbox = object.getHitbox();
+                if (object instanceof PhysicEntity)
+                    this.entityIndex.insert((PhysicEntity) object, hitbox.getX(), hitbox.getY(), hitbox.getWidth(), hitbox.getHeight());
+            }
+        }
+        this.sensors.add(sensor);
+    }
 
-        Point2D veloOne = new Point2D(0, 0);
-        Point2D veloTwo = new Point2D(0, 0);
+    /**
+     * To remove a sensor. The function entityExited of the sensor is not called for the entities in its area.
+     * @param sensor: the sensor
+     */
+    public void removeSensor(Sensor sensor) {
+        if (this.sensors.remove(sensor))
+            sensor.clearEntities();
+    }
 
-        if(firstObject instanceof PhysicEntity)
-            veloOne = ((PhysicEntity) firstObject).getVelocity();
-        if(secondObject instanceof PhysicEntity)
-            veloTwo = ((PhysicEntity) secondObject).getVelocity();
+    public List<Sensor> getSensors() {
+        return Collections.unmodifiableList(sensors);
+    }
 
-        return calculateCollision(firstObject.getHitbox(), veloOne, secondObject.getHitbox(), veloTwo);
+    /**
+     * To add an object from any thread: the object is added at the start of the next update.
+     * The commands of a thread are applied in the order they have been sent, and the commands of all the threads
+     * in the order they have been put in the queue. The handle of the object is known once it's added.
+     * @param object: the object to add
+     * @return if the command has been queued (false if it has been dropped because the queue is full)
+     */
+    public boolean queueAddObject(PhysicObject object) {
+        return object != null && queueCommand(new Command(Command.ADD, object, PhysicObject.NO_HANDLE, 0, 0));
     }
 
     /**
-     * This function gets the collisions between two hit box.
-     * @param firstHitbox: the first object
-     * @param secondHitbox: the second object
-     * @param firstHitboxVelocity: the velocity of the first hit box
-     * @param secondHitboxVelocity: the velocity of the second hit box
-     * @return null if there is no collision or the side of the first hit box where the collision happened
+     * To remove an object from any thread: the object is removed at the start of the next update (see queueAddObject).
+     * @param object: the object to remove
+     * @return if the command has been queued
      */
-    private Side calculateCollision(Rectangle firstHitbox, Point2D firstHitboxVelocity, Rectangle secondHitbox, Point2D secondHitboxVelocity) {
+    public boolean queueRemoveObject(PhysicObject object) {
+        return object != null && queueCommand(new Command(Command.REMOVE, object, PhysicObject.NO_HANDLE, 0, 0));
+    }
 
-        if(firstHitbox == null || secondHitbox == null) return null;
+    /**
+     * To remove an object with its handle from any thread: the object is removed at the start of the next update
+     * (see queueAddObject). Nothing is done if the handle is no longer valid at this time.
+     * @param handle: the handle of the object
+     * @return if the command has been queued
+     */
+    public boolean queueRemoveObject(int handle) {
+        return queueCommand(new Command(Command.REMOVE, null, handle, 0, 0));
+    }
 
-        Side result = null;
+    /**
+     * To change the velocity of an entity from any thread: the velocity is changed at the start of the next update
+     * (see queueAddObject). Nothing is done if the entity is not in the engine at this time.
+     * @param entity: the entity
+     * @param velocityX: the new velocity in x
+     * @param velocityY: the new velocity in y
+     * @return if the command has been queued
+     */
+    public boolean queueSetVelocity(PhysicEntity entity, double velocityX, double velocityY) {
+        return entity != null && queueCommand(new Command(Command.VELOCITY, entity, PhysicObject.NO_HANDLE, velocityX, velocityY));
+    }
 
-        double x1 = firstHitbox.getX(),
-                y1 = firstHitbox.getY(),
-                x2 = secondHitbox.getX(),
-                y2 = secondHitbox.getY();
-
-        double w1 = firstHitbox.getWidth(),
-                h1 = firstHitbox.getHeight(),
-                w2 = secondHitbox.getWidth(),
-                h2 = secondHitbox.getHeight();
-
-        // bottom
-        if (
-                (
-                        (x1 > x2 && x1 + w1 < x2 + w2) ||
-                                (x1 >= x2 && x1 < x2 + w2) ||
-                                (x1 + w1 > x2 && x1 + w1 <= x2 + w2) ||
-                                (x1 < x2 && x1 + w1 > x2 + w2)
-                ) &&
-                        (y2 < y1 + h1 && y1 < y2 && y2 + h2 > y1 + h1)
-                &&
-                        (firstHitboxVelocity.getY() > 0 || secondHitboxVelocity.getY() < 0 ||
-                                (firstHitboxVelocity.getY() == 0 && secondHitboxVelocity.getY() == 0 &&
-                                        firstHitboxVelocity.getX() == 0 && secondHitboxVelocity.getX() == 0)
-                        )
-        )
-            result = Side.BOTTOM;
-
-        // top
-        if (
-                (
-                        (x1 > x2 && x1 + w1 < x2 + w2) ||
-                                (x1 >= x2 && x1 < x2 + w2) ||
-                                (x1 + w1 > x2 && x1 + w1 <= x2 + w2) ||
-                                (x1 < x2 && x1 + w1 > x2 + w2)
-                ) &&
-                        (y2 + h2 > y1 && y2 + h2 < y1 + h1 && y2 < y1)
-                &&
-                        (firstHitboxVelocity.getY() < 0 || secondHitboxVelocity.getY() > 0 ||
-                                (firstHitboxVelocity.getY() == 0 && secondHitboxVelocity.getY() == 0 &&
-                                        firstHitboxVelocity.getX() == 0 && secondHitboxVelocity.getX() == 0)
-                        )
-        )
-            result = Side.TOP;
-
-        // left
-        if (
-                (
-                        (y1 + h1 > y2 + h2 && y1 < y2) ||
-                                (y1 + h1 < y2 + h2 && y1 > y2) ||
-                                (y1 >= y2 && y1 < y2 + h2) ||
-                                (y1 + h1 > y2 && y1 + h1 <= y2 + h2)
-                ) &&
-                        (x1 < x2 + w2 && x1 > x2 && x1 + w1 > x2)
-                &&
-                        (firstHitboxVelocity.getX() < 0 || secondHitboxVelocity.getX() > 0 ||
-                                (firstHitboxVelocity.getY() == 0 && secondHitboxVelocity.getY() == 0 &&
-                                        firstHitboxVelocity.getX() == 0 && secondHitboxVelocity.getX() == 0)
-                        )
-        )
-            result = Side.LEFT;
-
-        // right
-        if(
-                (
-                        (y1 + h1 > y2 + h2 && y1 < y2) ||
-                                (y1 + h1 < y2 + h2 && y1 > y2) ||
-                                (y1 >= y2 && y1 < y2 + h2) ||
-                                (y1 + h1 > y2 && y1 + h1 <= y2 + h2)
-                ) &&
-                        (x1 + w1 >= x2 && x1 + w1 < x2 + w2 && x2 + w2 > x1 + w1)
-                &&
-                        (firstHitboxVelocity.getX() > 0 || secondHitboxVelocity.getX() < 0 ||
-                                (firstHitboxVelocity.getY() == 0 && secondHitboxVelocity.getY() == 0 &&
-                                        firstHitboxVelocity.getX() == 0 && secondHitboxVelocity.getX() == 0)
-                        )
-        )
-            result = Side.RIGHT;
-
-        // in (first object into the second one)
-        if(
-                (y1 + h1 < y2 + h2 && y1 > y2) &&
-                        (x1 > x2 && x1 + w1 < x2 + w2)
-        )
-            result = Side.IN;
+    /**
+     * To change the velocity of an entity with its handle from any thread (see queueSetVelocity).
+     * @param handle: the handle of the entity
+     * @param velocityX: the new velocity in x
+     * @param velocityY: the new velocity in y
+     * @return if the command has been queued
+     */
+    public boolean queueSetVelocity(int handle, double velocityX, double velocityY) {
+        return queueCommand(new Command(Command.VELOCITY, null, handle, velocityX, velocityY));
+    }
 
-        return result;
+    /**
+     * Returns the number of commands waiting for the next update.
+     * @return the number of commands
+     */
+    public int getQueuedCommandsCount() {
+        return this.queuedCommandsCount.get();
     }
 
     /**
-     * This function returns if there is a collision on this entity on the next update.
-     * @param entity: the object
-     * @param delta: the delta to apply
-     * @return the object with which the collision will happen or null
+     * Returns the number of commands dropped because the queue was full (with the policy DROP).
+     * @return the number of commands dropped
      */
-    public PhysicObject collisionOnNextUpdate(PhysicEntity entity, float delta) {
+    public long getDroppedCommandsCount() {
+        return this.droppedCommandsCount.get();
+    }
 
-        PhysicObject result = null;
-        Point2D nextPos = entity.getNextPosition(delta);
-        Rectangle hitbox = new Rectangle(nextPos.getX(), nextPos.getY(), entity.getHitbox().getWidth(), entity.getHitbox().getHeight());
-        Point2D veloOne = entity.getVelocity();
+    public int getCommandQueueCapacity() {
+        return commandQueueCapacity;
+    }
 
+    /**
+     * To change the maximum number of commands waiting for the next update.
+     * @param commandQueueCapacity: the capacity of the queue
+     */
+    public void setCommandQueueCapacity(int commandQueueCapacity) {
+        if (commandQueueCapacity < 1)
+            throw new IllegalArgumentException("The command queue needs a capacity of one command at least.");
 
-        for (PhysicObject temp : objects) {
-            if(temp != entity) {
-                Rectangle tempHitbox = temp.getHitbox();
-                Point2D veloTwo = new Point2D(0, 0);
+        this.commandQueueCapacity = commandQueueCapacity;
+    }
 
-                // if it's an entity
-                if (temp instanceof PhysicEntity) {
-                    Point2D tempNextPos = ((PhysicEntity) temp).getNextPosition(delta);
-                    tempHitbox = new Rectangle(tempNextPos.getX(), tempNextPos.getY(), temp.getHitbox().getWidth(), temp.getHitbox().getHeight());
-                    veloTwo = ((PhysicEntity) temp).getVelocity();
-                }
+    public CommandOverflowPolicy getCommandOverflowPolicy() {
+        return commandOverflowPolicy;
+    }
 
-                if (calculateCollision(hitbox, veloOne, tempHitbox, veloTwo) != null)
-                    result = temp;
+    /**
+     * To change what the engine does with a command when the queue is full.
+     * @param commandOverflowPolicy: the policy
+     */
+    public void setCommandOverflowPolicy(CommandOverflowPolicy commandOverflowPolicy) {
+        this.commandOverflowPolicy = commandOverflowPolicy == null ? CommandOverflowPolicy.REJECT : commandOverflowPolicy;
+    }
+
+    /**
+     * To create a channel publishing the state of the objects after each update, for a thread that can't read the
+     * objects while the engine updates them (a render or a network thread for example). The thread reads the
+     * last complete state with the function acquire of the channel, without locks and without making the engine wait.
+     * Each reader thread needs its own channel. It can be called from any thread.
+     * @return the channel
+     */
+    public SnapshotChannel createSnapshotChannel() {
+        SnapshotChannel channel = new SnapshotChannel();
+        synchronized (this.snapshotChannelsLock) {
+            SnapshotChannel[] channels = Arrays.copyOf(this.snapshotChannels, this.snapshotChannels.length + 1);
+            channels[channels.length - 1] = channel;
+            this.snapshotChannels = channels;
+        }
+        return channel;
+    }
+
+    /**
+     * To stop publishing the state of the objects in a channel. It can be called from any thread.
+     * @param channel: the channel
+     */
+    public void removeSnapshotChannel(SnapshotChannel channel) {
+        synchronized (this.snapshotChannelsLock) {
+            SnapshotChannel[] channels = this.snapshotChannels;
+            for (int i = 0; i < channels.length; i++) {
+                if (channels[i] == channel) {
+                    SnapshotChannel[] newChannels = new SnapshotChannel[channels.length - 1];
+                    System.arraycopy(channels, 0, newChannels, 0, i);
+                    System.arraycopy(channels, i + 1, newChannels, i, channels.length - i - 1);
+                    this.snapshotChannels = newChannels;
+                    return;
+                }
             }
         }
+    }
 
-        return result;
+    /**
+     * Returns the number of updates done by the engine (the number of the last snapshot published).
+     * @return the number of updates
+     */
+    public long getUpdatesCount() {
+        return updatesCount;
     }
 
     /**
-     * This function returns all the objects around the object in parameter with a perimeter.
-     * @param object: the object
-     * @param perimeter: the perimeter around the object
-     * @return the objects around
+     * To update the fast entities in several steps during an update. An entity whose move during the update
+     * is greater than the threshold multiplied by the smallest dimension of its hit box is updated in as many
+     * steps as needed to move less than that at each step (with a maximum), and its collisions are handled after
+     * each step. The other entities are updated in one step.
+     * @param threshold: the maximum move in one step, relatively to the smallest dimension of the hit box (0.5 for half of it)
+     * @param maxSubsteps: the maximum number of steps of an entity
      */
-    public List<PhysicObject> getObjectsAround(PhysicObject object, int perimeter) {
-        List<PhysicObject> result = new ArrayList<>();
-        Rectangle perimeterRectangle = new Rectangle(
-                object.getHitbox().getX() - perimeter,
-                object.getHitbox().getY() - perimeter,
-                object.getHitbox().getWidth() + perimeter * 2,
-                object.getHitbox().getHeight() + perimeter * 2
-        );
+    public void setSubstepping(double threshold, int maxSubsteps) {
+        if (threshold <= 0 || maxSubsteps < 1)
+            throw new IllegalArgumentException("The threshold must be positive and the maximum number of steps at least 1.");
 
-        for (PhysicObject temp: this.objects)
-            if(temp != object && calculateCollision(perimeterRectangle, new Point2D(0, 0), temp.getHitbox(), new Point2D(0, 0)) != null)
-                result.add(temp);
+        this.substepThreshold = threshold;
+        this.maxSubsteps = maxSubsteps;
+    }
 
-        return result;
+    /**
+     * To update all the entities in one step (the default).
+     */
+    public void disableSubstepping() {
+        this.maxSubsteps = 1;
+    }
+
+    public double getSubstepThreshold() {
+        return substepThreshold;
+    }
+
+    public int getMaxSubsteps() {
+        return maxSubsteps;
     }
 
     /**
-     * To add a physic object in the engine.
-     * @param object: the object to add
+     * Returns the number of entities deferred by the last update (0 for an update without deadline).
+     * @return the number of entities deferred
      */
-    public void addObject(PhysicObject object) {
-        if(object != null)
-            this.objects.add(object);
+    public int getDeferredObjectsCount() {
+        return deferredObjectsCount;
     }
 
     /**
-     * To remove a physic object of the engine.
-     * @param object: the object to remove
+     * Returns the number of updates in a row that deferred entities, to detect a sustained overload.
+     * @return the number of updates
      */
-    public void removeObject(PhysicObject object) {
-        if(object != null)
-            this.objects.remove(object);
+    public int getOverloadedUpdatesCount() {
+        return overloadedUpdatesCount;
     }
 
     /**
-     * Getter of all the objects of the engine.
-     * @return all the objects managed by the engine
+     * Returns the average time of an update per entity updated, used to know how many entities can be updated
+     * before a deadline.
+     * @return the time in nanoseconds
      */
-    public List<PhysicObject> getObjects() {
-        return objects;
+    public long getUpdateCost() {
+        return updateCost;
     }
 
     /**
-     * Returns the objects of the engine with a specific name.
-     * @param name: the name
-     * @return the list of objects
+     * Returns the average time of an update spent on all the objects, updated or not (the bounds, the spatial index...).
+     * @return the time in nanoseconds
      */
-    public List<PhysicObject> getObjectsByName(String name) {
-        List<PhysicObject> result = new ArrayList<>();
+    public long getFixedUpdateCost() {
+        return fixedUpdateCost;
+    }
 
-        for (PhysicObject object : this.objects)
-            if(object.getName().equals(name))
-                result.add(object);
+    public float getMaxDeferredDelay() {
+        return maxDeferredDelay;
+    }
 
-        return result;
+    /**
+     * To change the time after which an entity deferred by the updates with a deadline is always updated.
+     * @param maxDeferredDelay: the time in second
+     */
+    public void setMaxDeferredDelay(float maxDeferredDelay) {
+        this.maxDeferredDelay = maxDeferredDelay;
+    }
+
+    /**
+     * To separate the entities in collision with each other, with the contact of the narrowphase (by default the
+     * entities can overlap each other and only the collision functions are called).
+     * @param separatingEntities: true to separate the entities
+     */
+    public void setSeparatingEntities(boolean separatingEntities) {
+        this.separatingEntities = separatingEntities;
+    }
+
+    public boolean isSeparatingEntities() {
+        return separatingEntities;
+    }
+
+    /**
+     * To reorder the objects by their positions every few updates (see reorderObjects), so the objects close in
+     * the world are close in memory after a long time of spawns and removals. The reordering is done at the start
+     * of the update, according to the number of updates, so it doesn't depend on the time.
+     * @param reorderInterval: the number of updates between two reorderings (0 to never reorder the objects)
+     */
+    public void setReorderInterval(int reorderInterval) {
+        if (reorderInterval < 0)
+            throw new IllegalArgumentException("The interval of the reorderings can't be negative.");
+
+        this.reorderInterval = reorderInterval;
+    }
+
+    public int getReorderInterval() {
+        return reorderInterval;
+    }
+
+    /**
+     * Returns the time of the last reordering of the objects.
+     * @return the time in nanoseconds
+     */
+    public long getLastReorderNanos() {
+        return lastReorderNanos;
+    }
+
+    /**
+     * Returns the time of all the reorderings of the objects.
+     * @return the time in nanoseconds
+     */
+    public long getTotalReorderNanos() {
+        return totalReorderNanos;
+    }
+
+    /**
+     * Returns the number of objects moved in the list by the last reordering.
+     * @return the number of objects
+     */
+    public int getLastReorderMovedObjects() {
+        return lastReorderMovedObjects;
     }
 
     public boolean isUsingGravity() {
@@ -473,4 +2213,28 @@ public class PhysicsEngine implements Updatable {
                 break;
         }
     }
+
+    /**
+     * A change of the engine sent by another thread.
+     */
+    private static final class Command {
+
+        static final int ADD = 0;                   /** To add the object. */
+        static final int REMOVE = 1;                /** To remove the object (or the object of the handle). */
+        static final int VELOCITY = 2;              /** To change the velocity of the entity (or the entity of the handle). */
+
+        final int type;                             /** The type of the command. */
+        final PhysicObject object;                  /** The object (null to use the handle). */
+        final int handle;                           /** The handle of the object. */
+        final double x;                             /** The x of the value. */
+        final double y;                             /** The y of the value. */
+
+        Command(int type, PhysicObject object, int handle, double x, double y) {
+            this.type = type;
+            this.object = object;
+            this.handle = handle;
+            this.x = x;
+            this.y = y;
+        }
+    }
 }
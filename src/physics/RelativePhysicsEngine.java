@@ -1,9 +1,15 @@
 package physics;
 
+import physics.Util.ChunkedWorldLoader;
+import physics.objects.PhysicEntity;
 import physics.objects.PhysicObject;
 import javafx.geometry.Point2D;
 import javafx.scene.shape.Rectangle;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 
 /**
  * This class extends of the PhysicsEngine. It represents an engine with a relative positions mechanism.
@@ -11,15 +17,22 @@ import javafx.scene.shape.Rectangle;
  * The reference object has a liberty rectangle where is allowed to move without modifications of the positions of the other objects.
  * To track an object at the middle of the screen you need a rectangle of null width and height and an x equal to the screen width / 2
  * and a y equal to the screen height / 2.
+ *
+ * The engine can have several cameras (see addCamera), each one with its own reference object and liberty rectangle.
+ * The functions without camera in parameter use the main camera.
+ *
+ * The engine can also simulate the objects with a level of detail depending of their distance to the reference objects
+ * (see setLevelOfDetail), so the far objects cost less or nothing.
  */
 public class RelativePhysicsEngine extends PhysicsEngine {
 
-    private PhysicObject referenceObject = null;            /** The reference object. */
-    private Rectangle libertyRectangle;                     /** The rectangle of liberty for the focused object. */
-    private double xPlan;                                   /** The x coordinate of the plan. (top left corner) */
-    private double yPlan;                                   /** The y coordinate of the plan. (top left corner) */
-    private double currentXLiberty;                         /** The current liberty of the reference object in x. */
-    private double currentYLiberty;                         /** The current liberty of the reference object in y. */
+    private final Camera mainCamera;                        /** The main camera, following the reference object. */
+    private final List<Camera> cameras;                     /** All the cameras (the main camera first). */
+    private ChunkedWorldLoader worldLoader = null;          /** The loader streaming the chunks around the reference object. */
+    private double activeRadius = Double.POSITIVE_INFINITY; /** The distance to the reference object where the objects are updated at each update. */
+    private double reducedRadius = Double.POSITIVE_INFINITY;/** The distance to the reference object where the objects are updated less often (frozen after). */
+    private int reducedRate = 1;                            /** The number of updates between two updates of an object in the reduced band. */
+    private final List<PhysicObject> visibleObjectsBuffer = new ArrayList<>();  /** The list used by the queries of visible objects. */
 
     /**
      * Constructor.
@@ -27,13 +40,9 @@ public class RelativePhysicsEngine extends PhysicsEngine {
     public RelativePhysicsEngine()
     {
         super();
-        this.libertyRectangle = new Rectangle(0, 0, 0, 0);
-        this.xPlan = 0;
-        this.yPlan = 0;
-        this.currentXLiberty = 0;
-        this.currentYLiberty = 0;
-
-        focusOnReferenceObject();
+        this.mainCamera = new Camera(null, new Rectangle(0, 0, 0, 0));
+        this.cameras = new ArrayList<>();
+        this.cameras.add(this.mainCamera);
     }
 
     /**
@@ -43,13 +52,9 @@ public class RelativePhysicsEngine extends PhysicsEngine {
     public RelativePhysicsEngine(Rectangle libertyRectangle)
     {
         super();
-        this.libertyRectangle = libertyRectangle;
-        this.xPlan = 0;
-        this.yPlan = 0;
-        this.currentXLiberty = 0;
-        this.currentYLiberty = 0;
-
-        focusOnReferenceObject();
+        this.mainCamera = new Camera(null, libertyRectangle);
+        this.cameras = new ArrayList<>();
+        this.cameras.add(this.mainCamera);
     }
 
     /**
@@ -60,13 +65,9 @@ public class RelativePhysicsEngine extends PhysicsEngine {
     public RelativePhysicsEngine(float gravityValue, Direction gravityDirection) {
         super(gravityValue, gravityDirection);
 
-        this.libertyRectangle = new Rectangle(0, 0, 0, 0);
-        this.xPlan = 0;
-        this.yPlan = 0;
-        this.currentXLiberty = 0;
-        this.currentYLiberty = 0;
-
-        focusOnReferenceObject();
+        this.mainCamera = new Camera(null, new Rectangle(0, 0, 0, 0));
+        this.cameras = new ArrayList<>();
+        this.cameras.add(this.mainCamera);
     }
 
     /**
@@ -78,13 +79,9 @@ public class RelativePhysicsEngine extends PhysicsEngine {
     public RelativePhysicsEngine(float gravityValue, Direction gravityDirection, Rectangle libertyRectangle) {
         super(gravityValue, gravityDirection);
 
-        this.libertyRectangle = libertyRectangle;
-        this.xPlan = 0;
-        this.yPlan = 0;
-        this.currentXLiberty = 0;
-        this.currentYLiberty = 0;
-
-        focusOnReferenceObject();
+        this.mainCamera = new Camera(null, libertyRectangle);
+        this.cameras = new ArrayList<>();
+        this.cameras.add(this.mainCamera);
     }
 
     /**
@@ -93,42 +90,180 @@ public class RelativePhysicsEngine extends PhysicsEngine {
      * @return the relative position of an object.
      */
     public Point2D getRelativePosition(PhysicObject object) {
-        return new Point2D(object.getPosition().getX() - this.xPlan, object.getPosition().getY() - this.yPlan);
+        return this.mainCamera.getRelativePosition(object);
+    }
+
+    /**
+     * This function returns the relative position of an object according to the reference object.
+     * @param handle: the handle of the object
+     * @return the relative position of the object, or null if the handle is not valid
+     */
+    public Point2D getRelativePosition(int handle) {
+        PhysicObject object = getObject(handle);
+        return object == null ? null : this.mainCamera.getRelativePosition(object);
+    }
+
+    /**
+     * This function exports the relative positions and sizes of the objects visible by the main camera.
+     * @see #getVisibleObjects(Camera, double, double, double[], List)
+     */
+    public int getVisibleObjects(double viewWidth, double viewHeight, double[] positions, List<PhysicObject> visibleObjects) {
+        return getVisibleObjects(this.mainCamera, viewWidth, viewHeight, positions, visibleObjects);
+    }
+
+    /**
+     * This function exports the relative positions and sizes of the objects visible by a camera, in one pass.
+     * The view is a rectangle at the position of the plan of the camera with the size in parameter. The objects
+     * are found with the spatial index of the engine, shared by all the cameras, so the objects outside of the
+     * view cost nothing.
+     * For the visible object number i, positions[4 * i] and positions[4 * i + 1] are its relative x and y and
+     * positions[4 * i + 2] and positions[4 * i + 3] its width and height.
+     * @param camera: the camera
+     * @param viewWidth: the width of the view
+     * @param viewHeight: the height of the view
+     * @param positions: the array to fill (if it's too small, only the first objects are written)
+     * @param visibleObjects: the list to fill with the visible objects in the same order (can be null)
+     * @return the number of visible objects (can be greater than the number of objects written)
+     */
+    public int getVisibleObjects(Camera camera, double viewWidth, double viewHeight, double[] positions, List<PhysicObject> visibleObjects) {
+        double xPlan = camera.getXPlan();
+        double yPlan = camera.getYPlan();
+
+        List<PhysicObject> result = visibleObjects != null ? visibleObjects : this.visibleObjectsBuffer;
+        result.clear();
+        getObjectsIn(xPlan, yPlan, viewWidth, viewHeight, result);
+
+        int written = Math.min(result.size(), positions.length / 4);
+        for (int i = 0; i < written; i++) {
+            Rectangle hitbox = result.get(i).getHitbox();
+            positions[4 * i] = hitbox.getX() - xPlan;
+            positions[4 * i + 1] = hitbox.getY() - yPlan;
+            positions[4 * i + 2] = hitbox.getWidth();
+            positions[4 * i + 3] = hitbox.getHeight();
+        }
+
+        int count = result.size();
+        this.visibleObjectsBuffer.clear();
+        return count;
     }
 
     @Override
     public void update(float delta) {
-        Point2D savedReferenceObjectPosition = this.referenceObject.getPosition();
+        for (int i = 0; i < this.cameras.size(); i++)
+            this.cameras.get(i).saveReferencePosition();
+
         super.update(delta);
 
-        // see if the ref object moved
-        Point2D movementOfFocusedObject = this.referenceObject.getPosition().subtract(savedReferenceObjectPosition);
-
-        // x
-        this.currentXLiberty += movementOfFocusedObject.getX();
-        if(Math.abs(this.currentXLiberty) > this.libertyRectangle.getWidth() / 2.d) {
-            if(this.currentXLiberty < 0) {
-                this.xPlan -= Math.abs(this.libertyRectangle.getWidth() / 2.d - Math.abs(this.currentXLiberty));
-                this.currentXLiberty = -1 * (this.libertyRectangle.getWidth() / 2.d);
-            }
-            else {
-                this.xPlan += Math.abs(this.libertyRectangle.getWidth() / 2.d - Math.abs(this.currentXLiberty));
-                this.currentXLiberty = this.libertyRectangle.getWidth() / 2.d;
-            }
+        // move the plans of the cameras if their reference object moved
+        for (int i = 0; i < this.cameras.size(); i++)
+            this.cameras.get(i).updatePlan();
+
+        // swap the chunks between two steps
+        if(this.worldLoader != null)
+            this.worldLoader.update(delta);
+    }
+
+    /**
+     * This function gives the level of detail of the objects according to their distance to the nearest reference
+     * object of the cameras. The objects near a reference object are updated at each update, the objects in the reduced band are
+     * updated once every reducedRate updates with all the time they missed, and the other ones are frozen.
+     * An entity keeps the time it missed, so it catches up when it comes back in the active band.
+     */
+    @Override
+    protected float getObjectDelta(int index, PhysicObject object, float delta) {
+        if (this.activeRadius == Double.POSITIVE_INFINITY)
+            return super.getObjectDelta(index, object, delta);
+
+        double distance = getDistanceToReferenceObjects(object);
+
+        // active band
+        if (distance <= this.activeRadius)
+            return delta + takePendingDelta(object);
+
+        // reduced band
+        if (distance <= this.reducedRadius) {
+            if (object instanceof PhysicEntity)
+                ((PhysicEntity) object).setPendingDelta(((PhysicEntity) object).getPendingDelta() + delta);
+
+            if ((getUpdatesCount() + index) % this.reducedRate != 0)
+                return -1;
+
+            return object instanceof PhysicEntity ? takePendingDelta(object) : delta;
         }
 
-        // y
-        this.currentYLiberty += movementOfFocusedObject.getY();
-        if(Math.abs(this.currentYLiberty) > this.libertyRectangle.getHeight() / 2.d) {
-            if(this.currentYLiberty < 0) {
-                this.yPlan -= Math.abs(this.libertyRectangle.getHeight() / 2.d - Math.abs(this.currentYLiberty));
-                this.currentYLiberty = -1 * (this.libertyRectangle.getHeight() / 2.d);
-            }
-            else {
-                this.yPlan += Math.abs(this.libertyRectangle.getHeight() / 2.d - Math.abs(this.currentYLiberty));
-                this.currentYLiberty = this.libertyRectangle.getHeight() / 2.d;
-            }
+        // frozen
+        return -1;
+    }
+
+    /**
+     * The objects near the reference objects of the cameras are updated first by an update with a deadline.
+     */
+    @Override
+    protected double getUpdatePriority(int index, PhysicEntity entity) {
+        return getDistanceToReferenceObjects(entity);
+    }
+
+    /**
+     * This function returns the distance between the hit box of an object and the nearest center of the reference
+     * objects of the cameras.
+     * @param object: the object
+     * @return the distance (0 if a center is in the hit box, infinite if there's no reference objects)
+     */
+    private double getDistanceToReferenceObjects(PhysicObject object) {
+        Rectangle hitbox = object.getHitbox();
+        double result = Double.POSITIVE_INFINITY;
+
+        for (int i = 0; i < this.cameras.size() && result > 0; i++) {
+            PhysicObject referenceObject = this.cameras.get(i).getReferenceObject();
+            if (referenceObject == null)
+                continue;
+
+            Rectangle reference = referenceObject.getHitbox();
+            double centerX = reference.getX() + reference.getWidth() / 2.d;
+            double centerY = reference.getY() + reference.getHeight() / 2.d;
+
+            double dx = Math.max(0, Math.max(hitbox.getX() - centerX, centerX - (hitbox.getX() + hitbox.getWidth())));
+            double dy = Math.max(0, Math.max(hitbox.getY() - centerY, centerY - (hitbox.getY() + hitbox.getHeight())));
+            result = Math.min(result, Math.sqrt(dx * dx + dy * dy));
         }
+
+        return result;
+    }
+
+    /**
+     * To simulate the objects less often when they are far of the reference objects of the cameras.
+     * @param activeRadius: the distance where the objects are updated at each update
+     * @param reducedRadius: the distance where the objects are updated once every reducedRate updates (frozen after)
+     * @param reducedRate: the number of updates between two updates of an object in the reduced band
+     */
+    public void setLevelOfDetail(double activeRadius, double reducedRadius, int reducedRate) {
+        if (activeRadius < 0 || reducedRadius < activeRadius || reducedRate < 1)
+            throw new IllegalArgumentException("The reduced radius must be greater or equal than the active radius and the rate at least 1.");
+
+        this.activeRadius = activeRadius;
+        this.reducedRadius = reducedRadius;
+        this.reducedRate = reducedRate;
+    }
+
+    /**
+     * To update all the objects at each update (the default).
+     */
+    public void disableLevelOfDetail() {
+        this.activeRadius = Double.POSITIVE_INFINITY;
+        this.reducedRadius = Double.POSITIVE_INFINITY;
+        this.reducedRate = 1;
+    }
+
+    public double getActiveRadius() {
+        return activeRadius;
+    }
+
+    public double getReducedRadius() {
+        return reducedRadius;
+    }
+
+    public int getReducedRate() {
+        return reducedRate;
     }
 
     /**
@@ -136,26 +271,113 @@ public class RelativePhysicsEngine extends PhysicsEngine {
      * @param newReferenceObject: the new reference object (must be in the engine)
      */
     public void setReferenceObject(PhysicObject newReferenceObject) {
-        if(objects.contains(newReferenceObject)) {
-            referenceObject = newReferenceObject;
-            focusOnReferenceObject();
-        }
+        setReferenceObject(this.mainCamera, newReferenceObject);
+    }
+
+    /**
+     * This function switch of reference object for a camera.
+     * @param camera: the camera
+     * @param newReferenceObject: the new reference object (must be in the engine)
+     */
+    public void setReferenceObject(Camera camera, PhysicObject newReferenceObject) {
+        if(contains(newReferenceObject))
+            camera.setReferenceObject(newReferenceObject);
+    }
+
+    /**
+     * This function switch of reference object for the engine.
+     * @param handle: the handle of the new reference object
+     */
+    public void setReferenceObject(int handle) {
+        setReferenceObject(this.mainCamera, getObject(handle));
+    }
+
+    /**
+     * This function switch of reference object for a camera.
+     * @param camera: the camera
+     * @param handle: the handle of the new reference object
+     */
+    public void setReferenceObject(Camera camera, int handle) {
+        setReferenceObject(camera, getObject(handle));
     }
 
     /**
      * To focus on the reference object.
      */
     public void focusOnReferenceObject() {
-        if(referenceObject != null) {
-            this.xPlan = referenceObject.getHitbox().getX() + referenceObject.getHitbox().getWidth() / 2 - (this.libertyRectangle.getWidth() / 2.d + this.libertyRectangle.getX());
-            this.yPlan = referenceObject.getHitbox().getY() + referenceObject.getHitbox().getHeight() / 2 - (this.libertyRectangle.getHeight() / 2.d + this.libertyRectangle.getY());
-            this.currentXLiberty = 0;
-            this.currentYLiberty = 0;
-        }
+        this.mainCamera.focusOnReferenceObject();
+    }
+
+    /**
+     * This function adds a camera following a reference object, with its own liberty rectangle and plan.
+     * All the cameras are updated in the same pass after the update of the objects.
+     * @param referenceObject: the reference object of the camera (must be in the engine)
+     * @param libertyRectangle: the liberty rectangle of the camera
+     * @return the camera, or null if the reference object is not in the engine
+     */
+    public Camera addCamera(PhysicObject referenceObject, Rectangle libertyRectangle) {
+        if(!contains(referenceObject))
+            return null;
+
+        Camera camera = new Camera(referenceObject, libertyRectangle);
+        this.cameras.add(camera);
+        return camera;
+    }
+
+    /**
+     * This function adds a camera following a reference object.
+     * @param handle: the handle of the reference object of the camera
+     * @param libertyRectangle: the liberty rectangle of the camera
+     * @return the camera, or null if the handle is not valid
+     */
+    public Camera addCamera(int handle, Rectangle libertyRectangle) {
+        return addCamera(getObject(handle), libertyRectangle);
+    }
+
+    /**
+     * To remove a camera added to the engine. The main camera can't be removed.
+     * @param camera: the camera
+     */
+    public void removeCamera(Camera camera) {
+        if(camera != this.mainCamera)
+            this.cameras.remove(camera);
+    }
+
+    /**
+     * Getter of the main camera, the one used by the functions without camera in parameter.
+     * @return the main camera
+     */
+    public Camera getMainCamera() {
+        return mainCamera;
+    }
+
+    /**
+     * Getter of all the cameras.
+     * @return the cameras (the main camera first)
+     */
+    public List<Camera> getCameras() {
+        return Collections.unmodifiableList(cameras);
+    }
+
+    public PhysicObject getReferenceObject() {
+        return this.mainCamera.getReferenceObject();
+    }
+
+    public ChunkedWorldLoader getWorldLoader() {
+        return worldLoader;
+    }
+
+    /**
+     * To stream the static objects of the world around the reference object.
+     * The loader is updated at the end of each update of the engine.
+     * @param worldLoader: the loader (null to stop streaming)
+     */
+    public void setWorldLoader(ChunkedWorldLoader worldLoader) {
+        this.worldLoader = worldLoader;
     }
 
     public Rectangle getLibertyRectangle() {
-        return libertyRectangle;
+        return this.mainCamera.getLibertyRectangle();
     }
 
     /**
@@ -164,9 +386,6 @@ public class RelativePhysicsEngine extends PhysicsEngine {
      * @param libertyRectangle: the new rectangle of liberty
      */
     public void setLibertyRectangle(Rectangle libertyRectangle) {
-        if (libertyRectangle.getWidth() >= 0 && libertyRectangle.getHeight() >= 0 && libertyRectangle.getX() >= 0 && libertyRectangle.getY() >= 0) {
-            this.libertyRectangle = libertyRectangle;
-            focusOnReferenceObject();
-        }
+        this.mainCamera.setLibertyRectangle(libertyRectangle);
     }
 }
@@ -0,0 +1,15 @@
+package physics;
+
+/**
+ * This class is the overlap kernel testing the boxes one by one.
+ * It's used when the Vector API is not available.
+ */
+public class ScalarOverlapKernel extends OverlapKernel {
+
+    @Override
+    public int overlaps(double minX, double minY, double maxX, double maxY,
+                        double[] minXs, double[] minYs, double[] maxXs, double[] maxYs,
+                        int from, int to, boolean touching, int[] result) {
+        return overlapsScalar(minX, minY, maxX, maxY, minXs, minYs, maxXs, maxYs, from, to, touching, result, 0);
+    }
+}
@@ -0,0 +1,157 @@
+package physics;
+
+import javafx.scene.shape.Rectangle;
+import physics.objects.PhysicEntity;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a sensor (a trigger volume): a rectangular area telling which entities are in it.
+ * A sensor is not an object of the engine: it doesn't collide, it never moves the entities and it's only tested
+ * against the hit boxes of the entities with the spatial index. After each update, the engine calls entityEntered
+ * for the entities that came in the area and entityExited for the ones that left it (or have been removed
+ * from the engine). It's useful for pickups, checkpoints or damage zones.
+ */
+public abstract class Sensor {
+
+    private final Rectangle area;                           /** The area of the sensor. */
+    private String name;                                    /** The name of the sensor. */
+    private int[] handles = new int[8];                     /** The handles of the entities in the area (sorted). */
+    private PhysicEntity[] entities = new PhysicEntity[8];  /** The entities in the area (in the order of their handles). */
+    private int entitiesCount = 0;                          /** The number of entities in the area. */
+
+    /**
+     * Constructor.
+     * @param area: the area of the sensor
+     */
+    public Sensor(Rectangle area) {
+        this("none", area);
+    }
+
+    /**
+     * Constructor.
+     * @param name: the name of the sensor
+     * @param area: the area of the sensor
+     */
+    public Sensor(String name, Rectangle area) {
+        this.name = name;
+        this.area = new Rectangle(area.getX(), area.getY(), area.getWidth(), area.getHeight());
+    }
+
+    /**
+     * This function is called by the engine when an entity comes in the area.
+     * @param entity: the entity
+     */
+    public abstract void entityEntered(PhysicEntity entity);
+
+    /**
+     * This function is called by the engine when an entity leaves the area or is removed from the engine.
+     * @param entity: the entity
+     */
+    public abstract void entityExited(PhysicEntity entity);
+
+    /**
+     * This function changes the entities in the area and calls the functions of the sensor for the differences.
+     * @param newHandles: the handles of the entities in the area now (sorted)
+     * @param newEntities: the entities in the area now (in the order of their handles)
+     * @param count: the number of entities in the area now
+     */
+    void updateEntities(int[] newHandles, PhysicEntity[] newEntities, int count) {
+        // the two lists are sorted by handle
+        int i = 0, j = 0;
+        while (i < this.entitiesCount || j < count) {
+            if (j == count || (i < this.entitiesCount && this.handles[i] < newHandles[j]))
+                entityExited(this.entities[i++]);
+            else if (i == this.entitiesCount || newHandles[j] < this.handles[i])
+                entityEntered(newEntities[j++]);
+            else {
+                i++;
+                j++;
+            }
+        }
+
+        if (this.handles.length < count) {
+            this.handles = new int[count * 2];
+            this.entities = new PhysicEntity[count * 2];
+        }
+        System.arraycopy(newHandles, 0, this.handles, 0, count);
+        System.arraycopy(newEntities, 0, this.entities, 0, count);
+        Arrays.fill(this.entities, count, Math.max(count, this.entitiesCount), null);
+        this.entitiesCount = count;
+    }
+
+    /**
+     * To forget the entities in the area, without calling entityExited (used when the sensor is removed from the engine).
+     */
+    void clearEntities() {
+        Arrays.fill(this.entities, 0, this.entitiesCount, null);
+        this.entitiesCount = 0;
+    }
+
+    /**
+     * Returns the number of entities in the area after the last update.
+     * @return the number of entities
+     */
+    public int getEntitiesCount() {
+        return entitiesCount;
+    }
+
+    /**
+     * Returns an entity in the area after the last update.
+     * @param index: the index of the entity (between 0 and the number of entities)
+     * @return the entity
+     */
+    public PhysicEntity getEntity(int index) {
+        if (index < 0 || index >= this.entitiesCount)
+            throw new IndexOutOfBoundsException("No entity at the index " + index + ".");
+
+        return entities[index];
+    }
+
+    /**
+     * Returns if an entity was in the area after the last update.
+     * @param entity: the entity
+     * @return if the entity is in the area
+     */
+    public boolean contains(PhysicEntity entity) {
+        return entity != null && Arrays.binarySearch(this.handles, 0, this.entitiesCount, entity.getHandle()) >= 0;
+    }
+
+    /**
+     * To move or resize the area. The entities in the new area are known after the next update.
+     * @param x: the x of the area
+     * @param y: the y of the area
+     * @param width: the width of the area
+     * @param height: the height of the area
+     */
+    public void setArea(double x, double y, double width, double height) {
+        this.area.setX(x);
+        this.area.setY(y);
+        this.area.setWidth(width);
+        this.area.setHeight(height);
+    }
+
+    public double getX() {
+        return area.getX();
+    }
+
+    public double getY() {
+        return area.getY();
+    }
+
+    public double getWidth() {
+        return area.getWidth();
+    }
+
+    public double getHeight() {
+        return area.getHeight();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,56 @@
+package physics;
+
+import physics.objects.PhysicObject;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class publishes the snapshots of an engine to one reader thread (a render or a network thread for example)
+ * without locks: it's a triple buffer.
+ * The engine writes in its buffer, then swaps it with the buffer in the middle. The reader swaps its buffer with
+ * the one in the middle when a new snapshot has been published. So the engine never waits for the reader, and
+ * the reader always reads a complete snapshot that is not changed while it reads it (until its next call to acquire).
+ * A channel has only one reader: each reader thread needs its own channel (see PhysicsEngine.createSnapshotChannel).
+ */
+public class SnapshotChannel {
+
+    private static final int INDEX_MASK = 3;        /** The mask of the index of the buffer in the middle. */
+    private static final int FRESH = 4;             /** The bit telling that the buffer in the middle hasn't been read. */
+
+    private final WorldSnapshot[] buffers = { new WorldSnapshot(), new WorldSnapshot(), new WorldSnapshot() };   /** The three buffers. */
+    private final AtomicInteger middle = new AtomicInteger(1);  /** The index of the buffer in the middle (and the fresh bit). */
+    private int writeIndex = 0;                     /** The buffer of the engine. */
+    private int readIndex = 2;                      /** The buffer of the reader. */
+
+    /**
+     * To publish the state of the objects (called by the engine after an update).
+     * @param update: the number of the update
+     * @param objects: the objects of the engine
+     * @param changedUpdates: the first update published after the last change of the object at each index
+     */
+    void publish(long update, List<PhysicObject> objects, long[] changedUpdates) {
+        this.buffers[this.writeIndex].write(update, objects, changedUpdates);
+        this.writeIndex = this.middle.getAndSet(this.writeIndex | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Returns the last snapshot published. The snapshot can be read until the next call to this function, the
+     * engine doesn't change it. It must be called only by the reader of the channel.
+     * @return the last snapshot (its update is -1 if the engine hasn't published anything yet)
+     */
+    public WorldSnapshot acquire() {
+        if ((this.middle.get() & FRESH) != 0)
+            this.readIndex = this.middle.getAndSet(this.readIndex) & INDEX_MASK;
+
+        return this.buffers[this.readIndex];
+    }
+
+    /**
+     * Returns if a snapshot has been published since the last call to acquire.
+     * @return if there's a new snapshot
+     */
+    public boolean hasNewSnapshot() {
+        return (this.middle.get() & FRESH) != 0;
+    }
+}
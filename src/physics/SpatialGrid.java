@@ -0,0 +1,502 @@
+package physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * This class represents a spatial index: a uniform grid of square cells where the items are stored
+ * in each cell their bounds overlap. A query only looks at the cells overlapped by the area.
+ * The cells are in a hash table, so the grid has no limits and only the used cells take memory. A cell that
+ * becomes empty leaves the table and is kept for the next new cell, so the items moving in the grid don't
+ * create cells once the grid has as many cells as it needs. A full cell takes the arrays of a bigger empty cell if
+ * there is one, and a cell with few items left gives its big arrays back to an empty cell, so the arrays only grow
+ * when the items gather more than before.
+ *
+ * In a cell the bounds of the items are stored in arrays, so a query tests them in batch with the overlap
+ * kernel without following references. An item in several cells is only returned once by a query.
+ * @param <T> the type of the items
+ */
+public class SpatialGrid<T> {
+
+    private final double cellSize;                          /** The size of a cell. */
+    private final IdentityHashMap<T, int[]> cellRanges;     /** The cells (first x, first y, last x, last y) of each item. */
+    private long[] keys;                                    /** The keys of the cells in the hash table. */
+    private Cell<T>[] cells;                                /** The cells of the hash table (null if the slot is free). */
+    private int cellsCount;                                 /** The number of cells in the hash table. */
+    private final ArrayList<Cell<T>> freeCells;             /** The empty cells out of the hash table, reused by the new cells. */
+    private final OverlapKernel kernel;                     /** The kernel testing the bounds of a cell. */
+    private int[] overlapping;                              /** The indexes of the items of a cell overlapping the area of a query. */
+
+    /**
+     * Constructor.
+     * @param cellSize: the size of a cell (about the size of the common items)
+     */
+    public SpatialGrid(double cellSize) {
+        if (cellSize <= 0)
+            throw new IllegalArgumentException("The size of a cell must be positive.");
+
+        this.cellSize = cellSize;
+        this.cellRanges = new IdentityHashMap<>();
+        this.keys = new long[64];
+        this.cells = newCells(64);
+        this.cellsCount = 0;
+        this.freeCells = new ArrayList<>();
+        this.kernel = OverlapKernel.get();
+        this.overlapping = new int[16];
+    }
+
+    /**
+     * To add an item in the grid.
+     * @param item: the item (if it's already in the grid, its bounds are updated)
+     * @param x: the x of the bounds
+     * @param y: the y of the bounds
+     * @param width: the width of the bounds
+     * @param height: the height of the bounds
+     */
+    public void insert(T item, double x, double y, double width, double height) {
+        if (this.cellRanges.containsKey(item)) {
+            update(item, x, y, width, height);
+            return;
+        }
+
+        int[] range = new int[] {getCell(x), getCell(y), getCell(x + width), getCell(y + height)};
+        this.cellRanges.put(item, range);
+
+        for (int cy = range[1]; cy <= range[3]; cy++)
+            for (int cx = range[0]; cx <= range[2]; cx++)
+                getOrCreateCell(cx, cy).add(item, range[0], range[1], x, y, width, height);
+    }
+
+    /**
+     * To change the bounds of an item of the grid.
+     * If the item stays in the same cells, only its bounds are changed.
+     * @param item: the item (if it's not in the grid, it's added)
+     * @param x: the x of the bounds
+     * @param y: the y of the bounds
+     * @param width: the width of the bounds
+     * @param height: the height of the bounds
+     */
+    public void update(T item, double x, double y, double width, double height) {
+        int[] range = this.cellRanges.get(item);
+        if (range == null) {
+            insert(item, x, y, width, height);
+            return;
+        }
+
+        int firstX = getCell(x), firstY = getCell(y), lastX = getCell(x + width), lastY = getCell(y + height);
+        if (firstX == range[0] && firstY == range[1] && lastX == range[2] && lastY == range[3]) {
+            for (int cy = range[1]; cy <= range[3]; cy++)
+                for (int cx = range[0]; cx <= range[2]; cx++)
+                    getCell(cx, cy).set(item, x, y, width, height);
+        }
+        else {
+            // the range is reused, so moving an item to other cells doesn't create objects (except new cells)
+            for (int cy = range[1]; cy <= range[3]; cy++)
+                for (int cx = range[0]; cx <= range[2]; cx++)
+                    removeFromCell(item, cx, cy);
+
+            range[0] = firstX;
+            range[1] = firstY;
+            range[2] = lastX;
+            range[3] = lastY;
+            for (int cy = firstY; cy <= lastY; cy++)
+                for (int cx = firstX; cx <= lastX; cx++)
+                    getOrCreateCell(cx, cy).add(item, firstX, firstY, x, y, width, height);
+        }
+    }
+
+    /**
+     * To remove an item of the grid.
+     * @param item: the item
+     */
+    public void remove(T item) {
+        int[] range = this.cellRanges.remove(item);
+        if (range == null)
+            return;
+
+        for (int cy = range[1]; cy <= range[3]; cy++)
+            for (int cx = range[0]; cx <= range[2]; cx++)
+                removeFromCell(item, cx, cy);
+    }
+
+    /**
+     * To remove all the items of the grid.
+     */
+    public void clear() {
+        this.cellRanges.clear();
+        for (int slot = 0; slot < this.cells.length; slot++) {
+            if (this.cells[slot] != null) {
+                this.cells[slot].clear();
+                this.freeCells.add(this.cells[slot]);
+                this.cells[slot] = null;
+            }
+        }
+        this.cellsCount = 0;
+    }
+
+    /**
+     * Returns if an item is in the grid.
+     * @param item: the item
+     * @return if the item is in the grid
+     */
+    public boolean contains(T item) {
+        return this.cellRanges.containsKey(item);
+    }
+
+    /**
+     * Returns the number of items in the grid.
+     * @return the number of items
+     */
+    public int size() {
+        return this.cellRanges.size();
+    }
+
+    /**
+     * This function adds to the result the items whose bounds overlap an area.
+     * Bounds only touching the area don't overlap it.
+     * @param x: the x of the area
+     * @param y: the y of the area
+     * @param width: the width of the area
+     * @param height: the height of the area
+     * @param result: the list where the items are added (not cleared)
+     */
+    public void query(double x, double y, double width, double height, List<T> result) {
+        query(x, y, x + width, y + height, false, result);
+    }
+
+    /**
+     * This function adds to the result the items whose bounds overlap (or touch) a box.
+     * @param minX: the left of the box
+     * @param minY: the top of the box
+     * @param maxX: the right of the box
+     * @param maxY: the bottom of the box
+     * @param touching: if the items only touching the box are added too
+     * @param result: the list where the items are added (not cleared)
+     */
+    public void query(double minX, double minY, double maxX, double maxY, boolean touching, List<T> result) {
+        int firstX = getCell(minX), firstY = getCell(minY), lastX = getCell(maxX), lastY = getCell(maxY);
+
+        for (int cy = firstY; cy <= lastY; cy++) {
+            for (int cx = firstX; cx <= lastX; cx++) {
+                Cell<T> cell = getCell(cx, cy);
+                if (cell == null)
+                    continue;
+
+                if (this.overlapping.length < cell.size)
+                    this.overlapping = new int[cell.items.length];
+
+                int count = this.kernel.overlaps(minX, minY, maxX, maxY, cell.minX, cell.minY, cell.maxX, cell.maxY, 0, cell.size, touching, this.overlapping);
+                for (int k = 0; k < count; k++) {
+                    int i = this.overlapping[k];
+
+                    // an item is only returned by the first cell of the area where it is
+                    if (cx == Math.max(cell.firstCellX[i], firstX) && cy == Math.max(cell.firstCellY[i], firstY))
+                        result.add(cell.items[i]);
+                }
+            }
+        }
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Returns the index of the cell containing a coordinate.
+     * @param coordinate: the coordinate
+     * @return the index of the cell
+     */
+    private int getCell(double coordinate) {
+        return (int) Math.floor(coordinate / this.cellSize);
+    }
+
+    /**
+     * Returns the key of a cell.
+     * @param cx: the x index of the cell
+     * @param cy: the y index of the cell
+     * @return the key
+     */
+    private static long getKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the slot of a key in the hash table (where it is or where it must be added).
+     * @param key: the key
+     * @return the slot
+     */
+    private int getSlot(long key) {
+        int mask = this.keys.length - 1;
+        int slot = getHomeSlot(key);
+        while (this.cells[slot] != null && this.keys[slot] != key)
+            slot = (slot + 1) & mask;
+
+        return slot;
+    }
+
+    /**
+     * Returns the first slot where a key is searched in the hash table.
+     * @param key: the key
+     * @return the slot
+     */
+    private int getHomeSlot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & (this.keys.length - 1);
+    }
+
+    /**
+     * Returns a cell.
+     * @param cx: the x index of the cell
+     * @param cy: the y index of the cell
+     * @return the cell or null if it has never been used
+     */
+    private Cell<T> getCell(int cx, int cy) {
+        return this.cells[getSlot(getKey(cx, cy))];
+    }
+
+    /**
+     * Returns a cell with the room for one more item, and creates it if needed.
+     * @param cx: the x index of the cell
+     * @param cy: the y index of the cell
+     * @return the cell
+     */
+    private Cell<T> getOrCreateCell(int cx, int cy) {
+        long key = getKey(cx, cy);
+        int slot = getSlot(key);
+        Cell<T> cell = this.cells[slot];
+        if (cell != null) {
+            if (cell.size == cell.items.length)
+                growCell(cell);
+            return cell;
+        }
+
+        // keep the table half empty
+        if ((this.cellsCount + 1) * 2 > this.keys.length) {
+            long[] oldKeys = this.keys;
+            Cell<T>[] oldCells = this.cells;
+            this.keys = new long[oldKeys.length * 2];
+            this.cells = newCells(oldKeys.length * 2);
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCells[i] != null) {
+                    int newSlot = getSlot(oldKeys[i]);
+                    this.keys[newSlot] = oldKeys[i];
+                    this.cells[newSlot] = oldCells[i];
+                }
+            }
+
+            slot = getSlot(key);
+        }
+
+        this.keys[slot] = key;
+        this.cells[slot] = this.freeCells.isEmpty() ? new Cell<>() : this.freeCells.remove(this.freeCells.size() - 1);
+        this.cellsCount++;
+        return this.cells[slot];
+    }
+
+    /**
+     * To give more room to a full cell: it takes the arrays of the biggest empty cell if they are bigger, else its
+     * arrays grow.
+     * @param cell: the cell
+     */
+    private void growCell(Cell<T> cell) {
+        Cell<T> biggest = null;
+        for (int i = 0; i < this.freeCells.size(); i++) {
+            Cell<T> free = this.freeCells.get(i);
+            if (free.items.length > cell.size && (biggest == null || free.items.length > biggest.items.length))
+                biggest = free;
+        }
+
+        if (biggest != null)
+            cell.exchange(biggest);
+        else
+            cell.grow(cell.size * 2);
+    }
+
+    /**
+     * To give the arrays of a cell with few items to an empty cell: the cell takes the smallest arrays of the empty
+     * cells that are smaller than its arrays.
+     * @param cell: the cell
+     */
+    private void shrinkCell(Cell<T> cell) {
+        Cell<T> smallest = null;
+        for (int i = 0; i < this.freeCells.size(); i++) {
+            Cell<T> free = this.freeCells.get(i);
+            if (free.items.length < cell.items.length && free.items.length >= cell.size * 2 && (smallest == null || free.items.length < smallest.items.length))
+                smallest = free;
+        }
+
+        if (smallest != null)
+            cell.exchange(smallest);
+    }
+
+    /**
+     * To remove an item of a cell. If the cell becomes empty, it leaves the hash table and it's kept for a new cell.
+     * @param item: the item
+     * @param cx: the x index of the cell
+     * @param cy: the y index of the cell
+     */
+    private void removeFromCell(T item, int cx, int cy) {
+        int slot = getSlot(getKey(cx, cy));
+        Cell<T> cell = this.cells[slot];
+        if (cell == null)
+            return;
+
+        cell.remove(item);
+        if (cell.size > 0) {
+            if (cell.items.length > 4 && cell.size * 4 == cell.items.length)
+                shrinkCell(cell);
+            return;
+        }
+
+        this.freeCells.add(cell);
+        this.cells[slot] = null;
+        this.cellsCount--;
+
+        // the next cells of the same run go back in the hole if it's between their first slot and their slot,
+        // so the search of a key still stops at the first free slot
+        int mask = this.keys.length - 1;
+        int hole = slot;
+        for (int i = (slot + 1) & mask; this.cells[i] != null; i = (i + 1) & mask) {
+            int home = getHomeSlot(this.keys[i]);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                this.keys[hole] = this.keys[i];
+                this.cells[hole] = this.cells[i];
+                this.cells[i] = null;
+                hole = i;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Cell<T>[] newCells(int length) {
+        return (Cell<T>[]) new Cell<?>[length];
+    }
+
+    /**
+     * A cell of the grid: the items and their bounds in arrays.
+     * @param <T> the type of the items
+     */
+    private static class Cell<T> {
+
+        private T[] items;                  /** The items of the cell. */
+        private int[] firstCellX;           /** The x index of the first cell of each item. */
+        private int[] firstCellY;           /** The y index of the first cell of each item. */
+        private double[] minX;              /** The left of each item. */
+        private double[] minY;              /** The top of each item. */
+        private double[] maxX;              /** The right of each item. */
+        private double[] maxY;              /** The bottom of each item. */
+        private int size;                   /** The number of items in the cell. */
+
+        @SuppressWarnings("unchecked")
+        Cell() {
+            this.items = (T[]) new Object[4];
+            this.firstCellX = new int[4];
+            this.firstCellY = new int[4];
+            this.minX = new double[4];
+            this.minY = new double[4];
+            this.maxX = new double[4];
+            this.maxY = new double[4];
+            this.size = 0;
+        }
+
+        void grow(int length) {
+            this.items = Arrays.copyOf(this.items, length);
+            this.firstCellX = Arrays.copyOf(this.firstCellX, length);
+            this.firstCellY = Arrays.copyOf(this.firstCellY, length);
+            this.minX = Arrays.copyOf(this.minX, length);
+            this.minY = Arrays.copyOf(this.minY, length);
+            this.maxX = Arrays.copyOf(this.maxX, length);
+            this.maxY = Arrays.copyOf(this.maxY, length);
+        }
+
+        /**
+         * To exchange the arrays of this cell with the ones of an empty cell, keeping the items of this cell.
+         * @param empty: the empty cell (with arrays big enough for the items of this cell)
+         */
+        void exchange(Cell<T> empty) {
+            System.arraycopy(this.items, 0, empty.items, 0, this.size);
+            System.arraycopy(this.firstCellX, 0, empty.firstCellX, 0, this.size);
+            System.arraycopy(this.firstCellY, 0, empty.firstCellY, 0, this.size);
+            System.arraycopy(this.minX, 0, empty.minX, 0, this.size);
+            System.arraycopy(this.minY, 0, empty.minY, 0, this.size);
+            System.arraycopy(this.maxX, 0, empty.maxX, 0, this.size);
+            System.arraycopy(this.maxY, 0, empty.maxY, 0, this.size);
+            Arrays.fill(this.items, 0, this.size, null);
+
+            T[] items = this.items;
+            this.items = empty.items;
+            empty.items = items;
+            int[] firstCellX = this.firstCellX;
+            this.firstCellX = empty.firstCellX;
+            empty.firstCellX = firstCellX;
+            int[] firstCellY = this.firstCellY;
+            this.firstCellY = empty.firstCellY;
+            empty.firstCellY = firstCellY;
+            double[] minX = this.minX;
+            this.minX = empty.minX;
+            empty.minX = minX;
+            double[] minY = this.minY;
+            this.minY = empty.minY;
+            empty.minY = minY;
+            double[] maxX = this.maxX;
+            this.maxX = empty.maxX;
+            empty.maxX = maxX;
+            double[] maxY = this.maxY;
+            this.maxY = empty.maxY;
+            empty.maxY = maxY;
+        }
+
+        void add(T item, int firstX, int firstY, double x, double y, double width, double height) {
+            this.items[this.size] = item;
+            this.firstCellX[this.size] = firstX;
+            this.firstCellY[this.size] = firstY;
+            this.size++;
+            set(this.size - 1, x, y, width, height);
+        }
+
+        void set(T item, double x, double y, double width, double height) {
+            int index = indexOf(item);
+            if (index >= 0)
+                set(index, x, y, width, height);
+        }
+
+        void set(int index, double x, double y, double width, double height) {
+            this.minX[index] = x;
+            this.minY[index] = y;
+            this.maxX[index] = x + width;
+            this.maxY[index] = y + height;
+        }
+
+        void remove(T item) {
+            int index = indexOf(item);
+            if (index < 0)
+                return;
+
+            // the last item takes the place of the removed one
+            this.size--;
+            this.items[index] = this.items[this.size];
+            this.firstCellX[index] = this.firstCellX[this.size];
+            this.firstCellY[index] = this.firstCellY[this.size];
+            this.minX[index] = this.minX[this.size];
+            this.minY[index] = this.minY[this.size];
+            this.maxX[index] = this.maxX[this.size];
+            this.maxY[index] = this.maxY[this.size];
+            this.items[this.size] = null;
+        }
+
+        void clear() {
+            Arrays.fill(this.items, 0, this.size, null);
+            this.size = 0;
+        }
+
+        int indexOf(T item) {
+            for (int i = 0; i < this.size; i++)
+                if (this.items[i] == item)
+                    return i;
+
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package physics;
+
+import javafx.scene.shape.Rectangle;
+import physics.objects.PhysicEntity;
+import physics.objects.PhysicObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents a static collision layer made of square tiles.
+ * The tiles are stored in a compact array of types. The type 0 is an empty tile and each other type has an
+ * object representing it, used by the engine to handle the collisions with the tiles of this type.
+ * Before a collision function is called, the hit box of this object is moved on the tiles in collision.
+ *
+ * The engine only tests an entity with the tiles under its hit box, found by index arithmetic,
+ * so the size of the grid doesn't change the cost of an update.
+ */
+public class TileGrid {
+
+    public static final int EMPTY = 0;                  /** The type of an empty tile. */
+    public static final int MAX_TYPES = 255;            /** The maximum number of types of tiles. */
+
+    private final int columns;                          /** The number of columns of the grid. */
+    private final int rows;                             /** The number of rows of the grid. */
+    private final double tileSize;                      /** The size of a tile in world units. */
+    private final double x;                             /** The x of the top-left corner of the grid. */
+    private final double y;                             /** The y of the top-left corner of the grid. */
+    private final byte[] tiles;                         /** The types of the tiles, line by line. */
+    private final List<PhysicObject> tileObjects;       /** The objects representing the types (type 1 at index 0). */
+
+    /**
+     * Constructor of an empty grid.
+     * @param columns: the number of columns
+     * @param rows: the number of rows
+     * @param tileSize: the size of a tile in world units
+     * @param x: the x of the top-left corner of the grid
+     * @param y: the y of the top-left corner of the grid
+     */
+    public TileGrid(int columns, int rows, double tileSize, double x, double y) {
+        if (columns < 0 || rows < 0 || tileSize <= 0)
+            throw new IllegalArgumentException("The size of the grid and of the tiles must be positive.");
+
+        this.columns = columns;
+        this.rows = rows;
+        this.tileSize = tileSize;
+        this.x = x;
+        this.y = y;
+        this.tiles = new byte[columns * rows];
+        this.tileObjects = new ArrayList<>();
+    }
+
+    /**
+     * This function adds a type of tile.
+     * @param tileObject: the object representing the tiles of this type (can't be an entity)
+     * @return the type
+     */
+    public int addTileType(PhysicObject tileObject) {
+        if (tileObject == null || tileObject instanceof PhysicEntity)
+            throw new IllegalArgumentException("The tiles must be represented by a static object.");
+        if (this.tileObjects.size() >= MAX_TYPES)
+            throw new IllegalStateException("Too many types of tiles.");
+
+        if (tileObject.getHitbox() == null)
+            tileObject.setHitbox(new Rectangle());
+
+        this.tileObjects.add(tileObject);
+        return this.tileObjects.size();
+    }
+
+    /**
+     * Returns the object representing a type of tile.
+     * @param type: the type
+     * @return the object or null if the type is empty or unknown
+     */
+    public PhysicObject getTileObject(int type) {
+        if (type <= EMPTY || type > this.tileObjects.size())
+            return null;
+
+        return this.tileObjects.get(type - 1);
+    }
+
+    /**
+     * Returns the type of a tile.
+     * @param column: the column of the tile
+     * @param row: the row of the tile
+     * @return the type (EMPTY outside of the grid)
+     */
+    public int getTile(int column, int row) {
+        if (column < 0 || row < 0 || column >= this.columns || row >= this.rows)
+            return EMPTY;
+
+        return this.tiles[row * this.columns + column] & 0xFF;
+    }
+
+    /**
+     * Changes the type of a tile.
+     * @param column: the column of the tile
+     * @param row: the row of the tile
+     * @param type: the type (EMPTY or a type added)
+     */
+    public void setTile(int column, int row, int type) {
+        if (column < 0 || row < 0 || column >= this.columns || row >= this.rows)
+            throw new IndexOutOfBoundsException("The tile (" + column + ", " + row + ") is not in the grid.");
+        if (type < EMPTY || type > this.tileObjects.size())
+            throw new IllegalArgumentException("Unknown type of tile: " + type);
+
+        this.tiles[row * this.columns + column] = (byte) type;
+    }
+
+    /**
+     * Returns the column containing a x in the world (can be outside of the grid).
+     * @param worldX: the x
+     * @return the column
+     */
+    public int getColumn(double worldX) {
+        return (int) Math.floor((worldX - this.x) / this.tileSize);
+    }
+
+    /**
+     * Returns the row containing a y in the world (can be outside of the grid).
+     * @param worldY: the y
+     * @return the row
+     */
+    public int getRow(double worldY) {
+        return (int) Math.floor((worldY - this.y) / this.tileSize);
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public double getTileSize() {
+        return tileSize;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+}
@@ -0,0 +1,19 @@
+package physics.Util;
+
+import java.io.UncheckedIOException;
+
+/**
+ * This interface represents a listener of the chunks that can't be read by the chunked world loader.
+ * It's called by the update of the loader (on the thread of the engine), not by the background thread.
+ */
+public interface ChunkErrorListener {
+
+    /**
+     * This function is called when a chunk can't be read by the source (an unreadable or corrupt file for instance).
+     * The chunk is not in the engine and it is requested again when the reference object changes of chunk.
+     * @param chunkX: the x index of the chunk
+     * @param chunkY: the y index of the chunk
+     * @param error: the error of the source
+     */
+    void chunkFailed(int chunkX, int chunkY, UncheckedIOException error);
+}
@@ -0,0 +1,22 @@
+package physics.Util;
+
+import physics.objects.PhysicObject;
+
+import java.util.List;
+
+/**
+ * This interface represents a level source split in square chunks.
+ * It's used by the chunked world loader to load the static objects of a chunk when it's needed.
+ * The function can be called from a background thread, so it must not use the engine.
+ */
+public interface ChunkSource {
+
+    /**
+     * This function loads the static objects of a chunk.
+     * The hit boxes of the objects must be in the coordinates of the world.
+     * @param chunkX: the x index of the chunk
+     * @param chunkY: the y index of the chunk
+     * @return the objects of the chunk (empty if there's nothing in the chunk)
+     */
+    List<PhysicObject> loadChunk(int chunkX, int chunkY);
+}
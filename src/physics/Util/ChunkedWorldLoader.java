@@ -0,0 +1,288 @@
+package physics.Util;
+
+import physics.RelativePhysicsEngine;
+import physics.Updatable;
+import physics.objects.PhysicObject;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class streams the static objects of a level around the reference object of a relative engine.
+ * The level is split in square chunks given by a chunk source. The chunks at a distance lower or equal than
+ * the load radius of the chunk of the reference object are loaded in background, and the chunks at a distance
+ * greater than the evict radius are removed from the engine. The distances are in chunks.
+ *
+ * The loaded chunks are only added to the engine in the update function, so the engine must call it between
+ * two steps (see RelativePhysicsEngine.setWorldLoader). The update never waits for a chunk.
+ *
+ * A chunk the source can't read (an UncheckedIOException) is given to the error listener, or thrown by the update
+ * if there's no listener. The other exceptions of the source are always thrown by the update.
+ */
+public class ChunkedWorldLoader implements Updatable {
+
+    private final RelativePhysicsEngine engine;                          /** The engine where the chunks are loaded. */
+    private final ChunkSource source;                                    /** The source of the chunks. */
+    private final double chunkSize;                                      /** The size of a chunk in world units. */
+    private int loadRadius;                                              /** The distance (in chunks) where the chunks are loaded. */
+    private int evictRadius;                                             /** The distance (in chunks) after which the chunks are removed. */
+    private final ExecutorService executor;                              /** The executor loading the chunks. */
+    private final boolean ownExecutor;                                   /** If the executor has been created by the loader. */
+
+    private final Map<Long, List<PhysicObject>> loadedChunks;            /** The objects of the chunks in the engine. */
+    private final Set<Long> pendingChunks;                               /** The chunks that are loading. */
+    private final ConcurrentLinkedQueue<LoadedChunk> completedChunks;    /** The chunks loaded but not in the engine yet. */
+    private ChunkErrorListener errorListener = null;                     /** The listener of the chunks that can't be read (null to throw the errors). */
+
+    private boolean hasCenter = false;                                   /** If the chunks around the reference object have been requested once. */
+    private int centerChunkX;                                            /** The x of the chunk of the reference object. */
+    private int centerChunkY;                                            /** The y of the chunk of the reference object. */
+
+    /**
+     * Constructor with a background thread to load the chunks.
+     * @param engine: the engine
+     * @param source: the source of the chunks
+     * @param chunkSize: the size of a chunk in world units
+     * @param loadRadius: the distance (in chunks) where the chunks are loaded
+     * @param evictRadius: the distance (in chunks) after which the chunks are removed (at least the load radius)
+     */
+    public ChunkedWorldLoader(RelativePhysicsEngine engine, ChunkSource source, double chunkSize, int loadRadius, int evictRadius) {
+        this(engine, source, chunkSize, loadRadius, evictRadius, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chunk-loader");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * Constructor with an executor to load the chunks.
+     * @param engine: the engine
+     * @param source: the source of the chunks
+     * @param chunkSize: the size of a chunk in world units
+     * @param loadRadius: the distance (in chunks) where the chunks are loaded
+     * @param evictRadius: the distance (in chunks) after which the chunks are removed (at least the load radius)
+     * @param executor: the executor loading the chunks
+     */
+    public ChunkedWorldLoader(RelativePhysicsEngine engine, ChunkSource source, double chunkSize, int loadRadius, int evictRadius, ExecutorService executor) {
+        this(engine, source, chunkSize, loadRadius, evictRadius, executor, false);
+    }
+
+    private ChunkedWorldLoader(RelativePhysicsEngine engine, ChunkSource source, double chunkSize, int loadRadius, int evictRadius, ExecutorService executor, boolean ownExecutor) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("The size of a chunk must be positive.");
+
+        this.engine = engine;
+        this.source = source;
+        this.chunkSize = chunkSize;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.loadedChunks = new HashMap<>();
+        this.pendingChunks = new HashSet<>();
+        this.completedChunks = new ConcurrentLinkedQueue<>();
+        setRadius(loadRadius, evictRadius);
+    }
+
+    /**
+     * This function adds the loaded chunks in the engine, removes the chunks too far of the reference object
+     * and requests the chunks that are now in the load radius.
+     * It must be called between two steps of the engine.
+     * @param delta: the delta of the step (not used)
+     * @throws UncheckedIOException if a chunk can't be read and there's no error listener
+     * @throws RuntimeException if the source failed with another exception
+     */
+    @Override
+    public void update(float delta) {
+        PhysicObject referenceObject = this.engine.getReferenceObject();
+        if (referenceObject == null)
+            return;
+
+        int chunkX = (int) Math.floor((referenceObject.getHitbox().getX() + referenceObject.getHitbox().getWidth() / 2.d) / this.chunkSize);
+        int chunkY = (int) Math.floor((referenceObject.getHitbox().getY() + referenceObject.getHitbox().getHeight() / 2.d) / this.chunkSize);
+        boolean moved = !this.hasCenter || chunkX != this.centerChunkX || chunkY != this.centerChunkY;
+        this.hasCenter = true;
+        this.centerChunkX = chunkX;
+        this.centerChunkY = chunkY;
+
+        // add the chunks loaded since the last step
+        LoadedChunk loadedChunk;
+        while ((loadedChunk = this.completedChunks.poll()) != null) {
+            this.pendingChunks.remove(loadedChunk.key);
+            if (loadedChunk.error != null)
+                reportError(loadedChunk);
+            else if (getDistance(loadedChunk.key) <= this.evictRadius) {
+                for (PhysicObject object : loadedChunk.objects)
+                    this.engine.addObject(object);
+                this.loadedChunks.put(loadedChunk.key, loadedChunk.objects);
+            }
+        }
+
+        if (!moved)
+            return;
+
+        // remove the chunks too far
+        Iterator<Map.Entry<Long, List<PhysicObject>>> iterator = this.loadedChunks.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, List<PhysicObject>> entry = iterator.next();
+            if (getDistance(entry.getKey()) > this.evictRadius) {
+                for (PhysicObject object : entry.getValue())
+                    this.engine.removeObject(object);
+                iterator.remove();
+            }
+        }
+
+        // request the chunks around
+        for (int y = chunkY - this.loadRadius; y <= chunkY + this.loadRadius; y++) {
+            for (int x = chunkX - this.loadRadius; x <= chunkX + this.loadRadius; x++) {
+                long key = getKey(x, y);
+                if (!this.loadedChunks.containsKey(key) && this.pendingChunks.add(key)) {
+                    int requestedX = x, requestedY = y;
+                    this.executor.execute(() -> this.completedChunks.add(loadChunk(key, requestedX, requestedY)));
+                }
+            }
+        }
+    }
+
+    /**
+     * To remove all the loaded chunks from the engine and stop the background thread if the loader created it.
+     */
+    public void close() {
+        for (List<PhysicObject> objects : this.loadedChunks.values())
+            for (PhysicObject object : objects)
+                this.engine.removeObject(object);
+
+        this.loadedChunks.clear();
+        this.pendingChunks.clear();
+        this.completedChunks.clear();
+        this.hasCenter = false;
+
+        if (this.ownExecutor)
+            this.executor.shutdownNow();
+    }
+
+    /**
+     * Returns if a chunk is in the engine.
+     * @param chunkX: the x index of the chunk
+     * @param chunkY: the y index of the chunk
+     * @return if the chunk is loaded
+     */
+    public boolean isChunkLoaded(int chunkX, int chunkY) {
+        return this.loadedChunks.containsKey(getKey(chunkX, chunkY));
+    }
+
+    /**
+     * Returns the number of chunks in the engine.
+     * @return the number of chunks loaded
+     */
+    public int getLoadedChunksCount() {
+        return this.loadedChunks.size();
+    }
+
+    public int getLoadRadius() {
+        return loadRadius;
+    }
+
+    public int getEvictRadius() {
+        return evictRadius;
+    }
+
+    /**
+     * To change the radius of the loader. The changes are applied when the reference object changes of chunk.
+     * @param loadRadius: the distance (in chunks) where the chunks are loaded
+     * @param evictRadius: the distance (in chunks) after which the chunks are removed (at least the load radius)
+     */
+    public void setRadius(int loadRadius, int evictRadius) {
+        if (loadRadius < 0 || evictRadius < loadRadius)
+            throw new IllegalArgumentException("The evict radius must be greater or equal than the load radius.");
+
+        this.loadRadius = loadRadius;
+        this.evictRadius = evictRadius;
+        this.hasCenter = false;
+    }
+
+    public ChunkErrorListener getErrorListener() {
+        return errorListener;
+    }
+
+    /**
+     * To set the listener of the chunks that can't be read by the source.
+     * @param errorListener: the listener (null to throw the errors in the update)
+     */
+    public void setErrorListener(ChunkErrorListener errorListener) {
+        this.errorListener = errorListener;
+    }
+
+    /**
+     * This function loads a chunk in the background thread.
+     * The exceptions of the source are kept in the result, so the update reports them on the thread of the engine.
+     * @param key: the key of the chunk
+     * @param chunkX: the x index of the chunk
+     * @param chunkY: the y index of the chunk
+     * @return the chunk loaded, with its objects or the error of the source
+     */
+    private LoadedChunk loadChunk(long key, int chunkX, int chunkY) {
+        try {
+            List<PhysicObject> objects = this.source.loadChunk(chunkX, chunkY);
+            return new LoadedChunk(key, objects != null ? objects : new ArrayList<>(), null);
+        } catch (RuntimeException e) {
+            return new LoadedChunk(key, null, e);
+        }
+    }
+
+    /**
+     * This function reports the error of a chunk: a chunk that can't be read is given to the error listener,
+     * the other errors are thrown.
+     * @param loadedChunk: the chunk that failed
+     */
+    private void reportError(LoadedChunk loadedChunk) {
+        if (loadedChunk.error instanceof UncheckedIOException && this.errorListener != null)
+            this.errorListener.chunkFailed((int) (loadedChunk.key >> 32), (int) loadedChunk.key, (UncheckedIOException) loadedChunk.error);
+        else
+            throw loadedChunk.error;
+    }
+
+    /**
+     * Returns the distance (in chunks) between a chunk and the chunk of the reference object.
+     * @param key: the key of the chunk
+     * @return the distance
+     */
+    private int getDistance(long key) {
+        int x = (int) (key >> 32);
+        int y = (int) key;
+        return Math.max(Math.abs(x - this.centerChunkX), Math.abs(y - this.centerChunkY));
+    }
+
+    /**
+     * Returns the key of a chunk.
+     * @param chunkX: the x index of the chunk
+     * @param chunkY: the y index of the chunk
+     * @return the key
+     */
+    private static long getKey(int chunkX, int chunkY) {
+        return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A chunk loaded in background.
+     */
+    private static class LoadedChunk {
+
+        private final long key;                             /** The key of the chunk. */
+        private final List<PhysicObject> objects;           /** The objects of the chunk (null if the loading failed). */
+        private final RuntimeException error;               /** The error of the source (null if the chunk has been loaded). */
+
+        LoadedChunk(long key, List<PhysicObject> objects, RuntimeException error) {
+            this.key = key;
+            this.objects = objects;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package physics.Util;
+
+import javafx.scene.shape.Rectangle;
+import physics.PhysicsEngine;
+import physics.objects.PhysicEntity;
+import physics.objects.PhysicObject;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class runs scenarios without rendering and without waiting: the engine of a scenario is updated as fast
+ * as possible for the number of ticks of the scenario, and the positions and velocities of the entities are
+ * written in a file after each tick, through a buffer.
+ * The scenarios are independent, so the runner runs them in parallel on a pool of threads (one per core by default).
+ */
+public class HeadlessRunner {
+
+    private static final int BINARY_MAGIC = 0x5452414A;     /** The magic number of the binary files ("TRAJ"). */
+    private static final int BINARY_VERSION = 1;            /** The version of the binary format. */
+    private static final int BUFFER_SIZE = 1 << 16;         /** The size of the buffer of the files. */
+
+    private final ExecutorService executor;                 /** The threads running the scenarios. */
+
+    /**
+     * Constructor with one thread per core.
+     */
+    public HeadlessRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     * @param threads: the number of scenarios run at the same time
+     */
+    public HeadlessRunner(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("The runner needs one thread at least.");
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "headless-runner-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * This function runs scenarios in parallel and waits for them.
+     * If a scenario fails, the other ones are cancelled and the error is thrown.
+     * @param scenarios: the scenarios
+     * @return the results, in the order of the scenarios
+     * @throws IOException if a file of trajectories can't be written
+     * @throws InterruptedException if the thread is interrupted while it waits
+     */
+    public List<Result> runAll(List<SimulationScenario> scenarios) throws IOException, InterruptedException {
+        List<Future<Result>> futures = new ArrayList<>();
+        for (SimulationScenario scenario : scenarios)
+            futures.add(this.executor.submit(() -> run(scenario)));
+
+        List<Result> results = new ArrayList<>();
+        try {
+            for (Future<Result> future : futures)
+                results.add(future.get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IllegalStateException("A scenario failed.", cause);
+        } finally {
+            for (Future<Result> future : futures)
+                future.cancel(true);
+        }
+
+        return results;
+    }
+
+    /**
+     * This function runs a scenario in the current thread.
+     * @param scenario: the scenario
+     * @return the result
+     * @throws IOException if the file of trajectories can't be written
+     */
+    public static Result run(SimulationScenario scenario) throws IOException {
+        PhysicsEngine engine = scenario.getEngineFactory().get();
+        TrajectoryWriter writer = null;
+        if (scenario.getOutput() != null)
+            writer = scenario.getOutputFormat() == SimulationScenario.OutputFormat.CSV ? new CsvWriter(scenario) : new BinaryWriter(scenario);
+
+        long start = System.nanoTime();
+        long records = 0;
+        try {
+            for (int tick = 0; tick < scenario.getTicks() && !Thread.currentThread().isInterrupted(); tick++) {
+                engine.update(scenario.getDelta());
+                if (writer != null)
+                    records += writer.write(tick, engine.getObjects());
+            }
+
+            engine.waitCollisionEvents();
+        } finally {
+            if (writer != null)
+                writer.close();
+        }
+
+        return new Result(scenario.getName(), scenario.getTicks(), records, System.nanoTime() - start);
+    }
+
+    /**
+     * To stop the threads of the runner.
+     */
+    public void close() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * The result of a scenario.
+     */
+    public static class Result {
+
+        private final String name;                  /** The name of the scenario. */
+        private final int ticks;                    /** The number of ticks simulated. */
+        private final long records;                 /** The number of positions of entities written. */
+        private final long nanos;                   /** The time of the scenario in nanoseconds. */
+
+        Result(String name, int ticks, long records, long nanos) {
+            this.name = name;
+            this.ticks = ticks;
+            this.records = records;
+            this.nanos = nanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getTicks() {
+            return ticks;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Returns the number of ticks simulated per second.
+         * @return the number of ticks per second
+         */
+        public double getTicksPerSecond() {
+            return this.nanos == 0 ? 0 : this.ticks * 1e9 / this.nanos;
+        }
+    }
+
+    /**
+     * A writer of trajectories.
+     */
+    private interface TrajectoryWriter {
+
+        /**
+         * To write the state of the entities after a tick.
+         * @param tick: the tick
+         * @param objects: the objects of the engine
+         * @return the number of entities written
+         * @throws IOException if the file can't be written
+         */
+        int write(int tick, List<PhysicObject> objects) throws IOException;
+
+        void close() throws IOException;
+    }
+
+    /**
+     * The writer of the CSV format.
+     */
+    private static class CsvWriter implements TrajectoryWriter {
+
+        private final Writer writer;
+
+        CsvWriter(SimulationScenario scenario) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(scenario.getOutput()), StandardCharsets.US_ASCII), BUFFER_SIZE);
+            this.writer.write("tick,handle,x,y,velocityX,velocityY\n");
+        }
+
+        @Override
+        public int write(int tick, List<PhysicObject> objects) throws IOException {
+            int count = 0;
+            for (int i = 0; i < objects.size(); i++) {
+                if (!(objects.get(i) instanceof PhysicEntity))
+                    continue;
+
+                PhysicEntity entity = (PhysicEntity) objects.get(i);
+                Rectangle hitbox = entity.getHitbox();
+                this.writer.write(Integer.toString(tick));
+                this.writer.write(',');
+                this.writer.write(Integer.toString(entity.getHandle()));
+                this.writer.write(',');
+                this.writer.write(Double.toString(hitbox.getX()));
+                this.writer.write(',');
+                this.writer.write(Double.toString(hitbox.getY()));
+                this.writer.write(',');
+                this.writer.write(Double.toString(entity.getVelocityX()));
+                this.writer.write(',');
+                this.writer.write(Double.toString(entity.getVelocityY()));
+                this.writer.write('\n');
+                count++;
+            }
+
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.writer.close();
+        }
+    }
+
+    /**
+     * The writer of the binary format.
+     */
+    private static class BinaryWriter implements TrajectoryWriter {
+
+        private final DataOutputStream stream;
+
+        BinaryWriter(SimulationScenario scenario) throws IOException {
+            this.stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(scenario.getOutput()), BUFFER_SIZE));
+            this.stream.writeInt(BINARY_MAGIC);
+            this.stream.writeInt(BINARY_VERSION);
+            this.stream.writeFloat(scenario.getDelta());
+        }
+
+        @Override
+        public int write(int tick, List<PhysicObject> objects) throws IOException {
+            int count = 0;
+            for (int i = 0; i < objects.size(); i++)
+                if (objects.get(i) instanceof PhysicEntity)
+                    count++;
+
+            this.stream.writeInt(tick);
+            this.stream.writeInt(count);
+            for (int i = 0; i < objects.size(); i++) {
+                if (!(objects.get(i) instanceof PhysicEntity))
+                    continue;
+
+                PhysicEntity entity = (PhysicEntity) objects.get(i);
+                Rectangle hitbox = entity.getHitbox();
+                this.stream.writeInt(entity.getHandle());
+                this.stream.writeDouble(hitbox.getX());
+                this.stream.writeDouble(hitbox.getY());
+                this.stream.writeDouble(entity.getVelocityX());
+                this.stream.writeDouble(entity.getVelocityY());
+            }
+
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.stream.close();
+        }
+    }
+}
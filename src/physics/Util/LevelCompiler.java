@@ -0,0 +1,186 @@
+package physics.Util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This class stores compiled levels in a cache directory.
+ * A compiled level is the list of the typed rectangles found in a pattern image, so a level already compiled
+ * can be loaded without decoding and decomposing the image again.
+ * The levels are identified by a hash of the content of the image and of the colors of objects.
+ *
+ * The format of a file is: the magic number, the version, the number of rectangles and then for each rectangle
+ * its color, x, y, width and height (all as integers). A file that doesn't follow this format (truncated or
+ * corrupted) is ignored, as if the level was not compiled.
+ */
+public class LevelCompiler {
+
+    private static final int MAGIC = 0x4C564C43;            /** The magic number of the files ("LVLC"). */
+    private static final int VERSION = 1;                   /** The version of the format. */
+    private static final String EXTENSION = ".level";       /** The extension of the files. */
+    private static final int HEADER_SIZE = 12;              /** The size of the magic number, the version and the number of rectangles. */
+    private static final int RECTANGLE_SIZE = 20;           /** The size of a rectangle in a file. */
+
+    private final File cacheDirectory;                      /** The directory of the compiled levels. */
+
+    /**
+     * Constructor.
+     * @param cacheDirectory: the directory of the compiled levels (created if needed)
+     */
+    public LevelCompiler(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * This function returns the key of a level.
+     * @param imageContent: the content of the pattern image file
+     * @param colorsOfObjects: the colors representing objects
+     * @return the key (SHA-256 in hexadecimal)
+     */
+    public String getKey(byte[] imageContent, int[] colorsOfObjects) {
+        MessageDigest digest = createDigest();
+        digest.update(imageContent);
+        return getKey(digest, colorsOfObjects);
+    }
+
+    /**
+     * This function returns the key of a level, reading the image file as a stream (the file is not loaded in memory).
+     * @param imageFile: the pattern image file
+     * @param colorsOfObjects: the colors representing objects
+     * @return the key (SHA-256 in hexadecimal)
+     * @throws IOException if the file can't be read
+     */
+    public String getKey(File imageFile, int[] colorsOfObjects) throws IOException {
+        MessageDigest digest = createDigest();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream input = new DigestInputStream(new FileInputStream(imageFile), digest)) {
+            while (input.read(buffer) >= 0) {
+                // the stream updates the digest
+            }
+        }
+
+        return getKey(digest, colorsOfObjects);
+    }
+
+    /**
+     * This function adds the colors of objects to a digest of an image and returns the key.
+     * @param digest: the digest of the content of the image
+     * @param colorsOfObjects: the colors representing objects
+     * @return the key (SHA-256 in hexadecimal)
+     */
+    private static String getKey(MessageDigest digest, int[] colorsOfObjects) {
+        for (int color : colorsOfObjects) {
+            digest.update((byte) (color >>> 24));
+            digest.update((byte) (color >>> 16));
+            digest.update((byte) (color >>> 8));
+            digest.update((byte) color);
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest())
+            key.append(String.format("%02x", b));
+
+        return key.toString();
+    }
+
+    /**
+     * Returns a new SHA-256 digest.
+     * @return the digest
+     */
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    /**
+     * This function reads a compiled level.
+     * @param key: the key of the level
+     * @return the rectangles (color, x, y, width, height for each one) or null if the level is not compiled
+     *         (or if its file is truncated or corrupted)
+     * @throws IOException if the file can't be read
+     */
+    public int[] load(String key) throws IOException {
+        File file = getFile(key);
+        long length = file.length();
+        if (!file.isFile() || length < HEADER_SIZE)
+            return null;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                return null;
+
+            // the number of rectangles must match the size of the file
+            int count = input.readInt();
+            if (count < 0 || length != HEADER_SIZE + (long) count * RECTANGLE_SIZE)
+                return null;
+
+            int[] rectangles = new int[count * 5];
+            for (int i = 0; i < rectangles.length; i++)
+                rectangles[i] = input.readInt();
+
+            for (int i = 0; i < rectangles.length; i += 5)
+                if (rectangles[i + 3] <= 0 || rectangles[i + 4] <= 0)
+                    return null;
+
+            return rectangles;
+        } catch (EOFException e) {
+            // the file has been truncated while it was read
+            return null;
+        }
+    }
+
+    /**
+     * This function writes a compiled level.
+     * The file is written next to its final place and then moved, so a level is never read half written.
+     * @param key: the key of the level
+     * @param rectangles: the rectangles (color, x, y, width, height for each one)
+     * @throws IOException if the file can't be written
+     */
+    public void store(String key, int[] rectangles) throws IOException {
+        Files.createDirectories(this.cacheDirectory.toPath());
+        File temporaryFile = File.createTempFile(key, ".tmp", this.cacheDirectory);
+
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 1 << 16))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(rectangles.length / 5);
+                for (int value : rectangles)
+                    output.writeInt(value);
+            }
+
+            Files.move(temporaryFile.toPath(), getFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+    }
+
+    /**
+     * Returns the file of a compiled level.
+     * @param key: the key of the level
+     * @return the file
+     */
+    private File getFile(String key) {
+        return new File(this.cacheDirectory, key + EXTENSION);
+    }
+
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+}
@@ -2,12 +2,24 @@ package physics.Util;
 
 import javafx.scene.shape.Rectangle;
 import physics.PhysicsEngine;
+import physics.TileGrid;
+import physics.objects.PhysicEntity;
 import physics.objects.PhysicObject;
 
+import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.awt.image.Raster;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.IntBinaryOperator;
 
 /**
  * This class is useful to load a pattern image and get physical objects from it.
@@ -17,6 +29,10 @@ import java.util.List;
 public abstract class ObjectsImageLoader {
 
     private int[] colorsOfObjects;                        /** The colors representing objects in pattern images. */
+    private byte[] colorKinds = null;                     /** For each color, if it's a color of entity (ENTITY_COLOR), of static object (STATIC_COLOR) or not known yet (0). */
+
+    private static final byte STATIC_COLOR = 1;           /** The kind of the colors of static objects. */
+    private static final byte ENTITY_COLOR = 2;           /** The kind of the colors of entities. */
 
     /**
      * Constructor of the loader.
@@ -50,13 +66,210 @@ public abstract class ObjectsImageLoader {
      * @return the list of the physical objects found in the pattern image.
      */
     public List<PhysicObject> getObjectsFromPatternImage(BufferedImage image) {
+        return getObjectsFromPatternImage(image, 0, 0, false);
+    }
+
+    /**
+     * This function create an engine based on a pattern image where the static objects are in a tile grid.
+     * Each pixel of a color of static object becomes a tile of the size in parameter, and the entities are
+     * loaded as objects (with their hit box scaled to the size of the tiles).
+     * @param image: the grayscale image
+     * @param tileSize: the size of a tile (one pixel of the image) in world units
+     * @return an engine with the tile grid and the entities of the pattern image loaded
+     */
+    public PhysicsEngine getEngineWithTileGrid(BufferedImage image, double tileSize) {
+        PhysicsEngine engine = new PhysicsEngine();
+        engine.setTileGrid(getTileGridFromPatternImage(image, tileSize));
+
+        // the entities
+        boolean[] entityColors = new boolean[this.colorsOfObjects.length];
+        for (int i = 0; i < this.colorsOfObjects.length; i++)
+            entityColors[i] = isEntityColor(this.colorsOfObjects[i]);
+
+        List<List<Rectangle>> rectanglesByColor = getRectanglesByColor(image, entityColors);
+        for (int i = 0; i < this.colorsOfObjects.length; i++) {
+            for (Rectangle rectangle : rectanglesByColor.get(i)) {
+                PhysicObject objectLoaded = getObjectFromColor(this.colorsOfObjects[i]);
+                objectLoaded.setHitbox(new Rectangle(rectangle.getX() * tileSize, rectangle.getY() * tileSize, rectangle.getWidth() * tileSize, rectangle.getHeight() * tileSize));
+                engine.addObject(objectLoaded);
+            }
+        }
+
+        return engine;
+    }
+
+    /**
+     * This function creates a tile grid from a pattern image.
+     * Each pixel of a color of static object becomes a tile of the size in parameter, and the type of the tile
+     * is represented by an object created with the color. The colors of entities are ignored.
+     * @param image: the grayscale image
+     * @param tileSize: the size of a tile (one pixel of the image) in world units
+     * @return the tile grid, with its top-left corner at (0, 0)
+     */
+    public TileGrid getTileGridFromPatternImage(BufferedImage image, double tileSize) {
+        TileGrid result = new TileGrid(image.getWidth(), image.getHeight(), tileSize, 0, 0);
+
+        // the type of tile of each color
+        int[] types = new int[getColorTableSize()];
+        for (int color : this.colorsOfObjects)
+            if (color >= 0 && types[color] == TileGrid.EMPTY && !isEntityColor(color))
+                types[color] = result.addTileType(getObjectFromColor(color));
+
+        PatternSamples samples = new PatternSamples(image);
+        for (int j = 0; j < image.getHeight(); j++) {
+            for (int i = 0; i < image.getWidth(); i++) {
+                int type = PatternSamples.lookup(types, samples.get(i, j), TileGrid.EMPTY);
+                if (type != TileGrid.EMPTY)
+                    result.setTile(i, j, type);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * This function create an engine based on a pattern image file, using the compiled levels of the compiler.
+     * @param imageFile: the file of the grayscale image
+     * @param compiler: the compiler storing the compiled levels
+     * @return an engine with the objects of the pattern image loaded
+     * @throws IOException if the image or the compiled level can't be read
+     */
+    public PhysicsEngine getEngineWithPatternImage(File imageFile, LevelCompiler compiler) throws IOException {
+        PhysicsEngine engine = new PhysicsEngine();
+
+        for (PhysicObject object: getObjectsFromPatternImage(imageFile, compiler))
+            engine.addObject(object);
+
+        return engine;
+    }
+
+    /**
+     * This function loads physical objects from a pattern image file, using the compiled levels of the compiler.
+     * If the image has already been compiled with the same colors of objects, the rectangles are read in the
+     * compiled level and the image is not decoded. Otherwise the image is decomposed and the level is compiled
+     * for the next times.
+     * @param imageFile: the file of the grayscale image
+     * @param compiler: the compiler storing the compiled levels
+     * @return the list of the physical objects found in the pattern image.
+     * @throws IOException if the image or the compiled level can't be read
+     */
+    public List<PhysicObject> getObjectsFromPatternImage(File imageFile, LevelCompiler compiler) throws IOException {
+        String key = compiler.getKey(imageFile, this.colorsOfObjects);
+
+        int[] rectangles = compiler.load(key);
+        if (rectangles == null) {
+            BufferedImage image = ImageIO.read(imageFile);
+            if (image == null)
+                throw new IOException("Impossible to read the pattern image " + imageFile.getPath());
+
+            rectangles = compileRectangles(image);
+            compiler.store(key, rectangles);
+        }
+
+        List<PhysicObject> result = new ArrayList<>(rectangles.length / 5);
+        for (int i = 0; i < rectangles.length; i += 5) {
+            PhysicObject objectLoaded = getObjectFromColor(rectangles[i]);
+            objectLoaded.setHitbox(new Rectangle(rectangles[i + 1], rectangles[i + 2], rectangles[i + 3], rectangles[i + 4]));
+            result.add(objectLoaded);
+        }
+
+        return result;
+    }
+
+    /**
+     * This function returns the rectangles of a pattern image in the format of the compiled levels.
+     * @param image: the grayscale image
+     * @return the rectangles (color, x, y, width, height for each one) ordered by color
+     */
+    private int[] compileRectangles(BufferedImage image) {
+        List<List<Rectangle>> rectanglesByColor = getRectanglesByColor(image);
+
+        int count = 0;
+        for (List<Rectangle> rectangles : rectanglesByColor)
+            count += rectangles.size();
+
+        int[] result = new int[count * 5];
+        int index = 0;
+        for (int i = 0; i < this.colorsOfObjects.length; i++) {
+            for (Rectangle rectangle : rectanglesByColor.get(i)) {
+                result[index++] = this.colorsOfObjects[i];
+                result[index++] = (int) rectangle.getX();
+                result[index++] = (int) rectangle.getY();
+                result[index++] = (int) rectangle.getWidth();
+                result[index++] = (int) rectangle.getHeight();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * This function returns a chunk source reading the chunks in one pattern image.
+     * The image stays in memory but the objects are only created when their chunk is loaded.
+     * Only the static objects are loaded (the entities of the image are ignored).
+     * @param image: the grayscale image
+     * @param chunkSize: the size of a chunk in pixels
+     * @return the chunk source
+     */
+    public ChunkSource getChunkSource(BufferedImage image, int chunkSize) {
+        return (chunkX, chunkY) -> {
+            int x = chunkX * chunkSize;
+            int y = chunkY * chunkSize;
+            if (chunkX < 0 || chunkY < 0 || x >= image.getWidth() || y >= image.getHeight())
+                return new ArrayList<>();
+
+            BufferedImage chunkImage = image.getSubimage(x, y, Math.min(chunkSize, image.getWidth() - x), Math.min(chunkSize, image.getHeight() - y));
+            return getObjectsFromPatternImage(chunkImage, x, y, true);
+        };
+    }
+
+    /**
+     * This function returns a chunk source reading one pattern image per chunk in a directory.
+     * The image of the chunk (x, y) must be named "x_y.png" and have a size of chunkSize pixels, so the
+     * level doesn't need to be in memory. A chunk without image is empty, a chunk whose image can't be read
+     * throws an UncheckedIOException.
+     * Only the static objects are loaded (the entities of the images are ignored).
+     * @param directory: the directory of the images
+     * @param chunkSize: the size of a chunk in pixels
+     * @return the chunk source
+     */
+    public ChunkSource getChunkSource(File directory, int chunkSize) {
+        return (chunkX, chunkY) -> {
+            File file = new File(directory, chunkX + "_" + chunkY + ".png");
+            if (!file.isFile())
+                return new ArrayList<>();
+
+            try {
+                BufferedImage image = ImageIO.read(file);
+                if (image == null)
+                    throw new IOException("The file is not a readable image.");
+                return getObjectsFromPatternImage(image, chunkX * chunkSize, chunkY * chunkSize, true);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Impossible to load the chunk " + file.getPath(), e);
+            }
+        };
+    }
+
+    /**
+     * This function loads physical objects from a pattern image placed somewhere in the world.
+     * @param image: the grayscale image
+     * @param offsetX: the x of the top-left corner of the image in the world
+     * @param offsetY: the y of the top-left corner of the image in the world
+     * @param staticOnly: if the entities must be ignored
+     * @return the list of the physical objects found in the pattern image.
+     */
+    private List<PhysicObject> getObjectsFromPatternImage(BufferedImage image, int offsetX, int offsetY, boolean staticOnly) {
         List<PhysicObject> result = new ArrayList<>();
+        List<List<Rectangle>> rectanglesByColor = getRectanglesByColor(image);
 
-        for(int color : this.colorsOfObjects) {
-            List<Rectangle> rectangles = getRectanglesOfColor(image, color);
+        for (int i = 0; i < this.colorsOfObjects.length; i++) {
+            if (staticOnly && isEntityColor(this.colorsOfObjects[i]))
+                continue;
 
-            for (Rectangle hitbox : rectangles) {
-                PhysicObject objectLoaded = getObjectFromColor(color);
+            for (Rectangle hitbox : rectanglesByColor.get(i)) {
+                PhysicObject objectLoaded = getObjectFromColor(this.colorsOfObjects[i]);
+                hitbox.setX(hitbox.getX() + offsetX);
+                hitbox.setY(hitbox.getY() + offsetY);
                 objectLoaded.setHitbox(hitbox);
                 result.add(objectLoaded);
             }
@@ -66,64 +279,122 @@ public abstract class ObjectsImageLoader {
     }
 
     /**
-     * This function returns all the rectangles of a specific color found in a grayscale image.
+     * This function decomposes a grayscale image in rectangles for all the colors of objects in one pass
+     * (see decomposeArea).
      * @param image: the grayscale image
-     * @param color: the color of the rectangles (0 to 255)
-     * @return the list of the rectangles found
-     */
-    private List<Rectangle> getRectanglesOfColor(BufferedImage image, int color) {
-        List<Rectangle> result = new ArrayList<>();
-
-        Raster raster = image.getData();
-        for (int i = 0; i < image.getWidth(); i++) {
-            for (int j = 0; j < image.getHeight(); j++) {
-
-                // if we are not already in a rectangle
-                boolean alreadyInRectangle = false;
-                for (Rectangle rectangle : result) {
-                    if(
-                        i >= rectangle.getX() && i <= rectangle.getX() + rectangle.getWidth() &&
-                        j >= rectangle.getY() && j <= rectangle.getY() + rectangle.getHeight()
-                    )
-                        alreadyInRectangle = true;
-                }
+     * @return the rectangles found, one list per color in the same order as the colors of objects
+     */
+    private List<List<Rectangle>> getRectanglesByColor(BufferedImage image) {
+        boolean[] decomposedColors = new boolean[this.colorsOfObjects.length];
+        Arrays.fill(decomposedColors, true);
+        return getRectanglesByColor(image, decomposedColors);
+    }
+
+    /**
+     * This function decomposes a grayscale image in rectangles for some colors of objects in one pass.
+     * @param image: the grayscale image
+     * @param decomposedColors: for each color of objects, if its rectangles are needed
+     * @return the rectangles found, one list per color in the same order as the colors of objects
+     */
+    private List<List<Rectangle>> getRectanglesByColor(BufferedImage image, boolean[] decomposedColors) {
+        List<List<Rectangle>> result = new ArrayList<>();
+        for (int i = 0; i < this.colorsOfObjects.length; i++)
+            result.add(new ArrayList<>());
+
+        // index of each color in the colors of objects (-1 if it's not an object)
+        int[] colorIndexes = new int[getColorTableSize()];
+        Arrays.fill(colorIndexes, -1);
+        for (int i = this.colorsOfObjects.length - 1; i >= 0; i--)
+            if (decomposedColors[i] && this.colorsOfObjects[i] >= 0)
+                colorIndexes[this.colorsOfObjects[i]] = i;
+
+        PatternSamples samples = new PatternSamples(image);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] rectangles = decomposeArea((x, y) -> PatternSamples.lookup(colorIndexes, samples.get(x, y), -1) + 1,
+                0, 0, width, height, new boolean[width * height]);
+
+        for (int i = 0; i < rectangles.length; i += 5)
+            result.get(rectangles[i]).add(new Rectangle(rectangles[i + 1], rectangles[i + 2], rectangles[i + 3], rectangles[i + 4]));
+
+        return result;
+    }
 
-                if(!alreadyInRectangle) {
-                    int pixel = raster.getSample(i, j, 0);
-
-                    // we've match with the color
-                    if (pixel == color) {
-                        // find the width
-                        boolean findWidth = false;
-                        int width = 1;
-                        for (int k = i + 1; !findWidth && k < image.getWidth(); k++) {
-                            if (raster.getSample(k, j, 0) != color)
-                                findWidth = true;
-                            else
-                                width++;
-                        }
-
-                        // find the height
-                        boolean findHeight = false;
-                        int height = 1;
-                        for (int k = j + 1; !findHeight && k < image.getHeight(); k++) {
-                            if (raster.getSample(i, k, 0) != color)
-                                findHeight = true;
-                            else
-                                height++;
-                        }
-
-                        // add it
-                        result.add(new Rectangle(i, j, width, height));
-
-                        // jump after the rectangle
-                        j += height;
-                    }
+    /**
+     * This function decomposes an area of a pattern image in rectangles of the same color in one pass.
+     * The area is browsed line by line with a bitmap of the visited pixels. On a pixel not visited with a
+     * color of objects, the rectangle is extended as much as possible to the right and then to the bottom.
+     * Each pixel is read a constant number of times, so the time is linear in the size of the area.
+     * @param colors: gives the index of the color of a pixel (x, y) of the image plus 1, or 0 if it's not an object
+     * @param x0: the x of the area
+     * @param y0: the y of the area
+     * @param width: the width of the area
+     * @param height: the height of the area
+     * @param visited: an array of at least width * height booleans (cleared here)
+     * @return the rectangles (index of the color, x, y, width and height for each one, in pixels of the image)
+     */
+    static int[] decomposeArea(IntBinaryOperator colors, int x0, int y0, int width, int height, boolean[] visited) {
+        Arrays.fill(visited, 0, width * height, false);
+
+        int[] result = new int[20];
+        int count = 0;
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                if (visited[j * width + i])
+                    continue;
+
+                int color = colors.applyAsInt(x0 + i, y0 + j);
+                if (color == 0)
+                    continue;
+
+                // find the width
+                int right = i + 1;
+                while (right < width && !visited[j * width + right] && colors.applyAsInt(x0 + right, y0 + j) == color)
+                    right++;
+
+                // find the height (all the line under the rectangle must have the color)
+                int bottom = j + 1;
+                boolean findHeight = false;
+                while (!findHeight && bottom < height) {
+                    for (int k = i; !findHeight && k < right; k++)
+                        if (visited[bottom * width + k] || colors.applyAsInt(x0 + k, y0 + bottom) != color)
+                            findHeight = true;
+
+                    if (!findHeight)
+                        bottom++;
                 }
+
+                // mark the pixels of the rectangle
+                for (int l = j; l < bottom; l++)
+                    Arrays.fill(visited, l * width + i, l * width + right, true);
+
+                // add it
+                if (count + 5 > result.length)
+                    result = Arrays.copyOf(result, result.length * 2);
+                result[count++] = color - 1;
+                result[count++] = x0 + i;
+                result[count++] = y0 + j;
+                result[count++] = right - i;
+                result[count++] = bottom - j;
+
+                // jump after the rectangle
+                i = right - 1;
             }
         }
 
-        return result;
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * This function loads the static objects of a pattern image in an engine, as a level that can be reloaded
+     * when the image changes (see ReloadablePatternLevel). The entities of the image are ignored.
+     * @param engine: the engine where the objects are added
+     * @param image: the grayscale image
+     * @param blockSize: the size in pixels of the blocks compared at each reload
+     * @return the level
+     */
+    public ReloadablePatternLevel getReloadableLevel(PhysicsEngine engine, BufferedImage image, int blockSize) {
+        return new ReloadablePatternLevel(this, engine, image, blockSize);
     }
 
     /**
@@ -133,11 +404,127 @@ public abstract class ObjectsImageLoader {
      */
     protected abstract PhysicObject getObjectFromColor(int color);
 
+    /**
+     * This function returns if a color represents entities, to skip them when only the static objects are loaded.
+     * By default an object of the color is created once and the answer is kept, so override it if creating an
+     * object has a cost or side effects.
+     * @param color: the color representing the object
+     * @return if the objects of the color are entities
+     */
+    protected boolean isEntityColor(int color) {
+        if (color < 0)
+            return getObjectFromColor(color) instanceof PhysicEntity;
+
+        if (this.colorKinds == null || this.colorKinds.length <= color)
+            this.colorKinds = Arrays.copyOf(this.colorKinds == null ? new byte[0] : this.colorKinds, Math.max(getColorTableSize(), color + 1));
+
+        if (this.colorKinds[color] == 0)
+            this.colorKinds[color] = getObjectFromColor(color) instanceof PhysicEntity ? ENTITY_COLOR : STATIC_COLOR;
+
+        return this.colorKinds[color] == ENTITY_COLOR;
+    }
+
+    /**
+     * Getter for the list of colors.
+     * @return the colors representing objects in pattern images
+     */
+    public int[] getColorsOfObjects() {
+        return colorsOfObjects;
+    }
+
+    /**
+     * Returns the size of the tables indexed by the colors of objects (the greatest color plus 1).
+     * @return the size of the tables
+     */
+    int getColorTableSize() {
+        int size = 1;
+        for (int color : this.colorsOfObjects)
+            size = Math.max(size, color + 1);
+
+        return size;
+    }
+
     /**
      * Setter for the list of colors.
      * @param colorsOfObjects: the new colors
      */
     public void setColorsOfObjects(int[] colorsOfObjects) {
         this.colorsOfObjects = colorsOfObjects;
+        this.colorKinds = null;
+    }
+
+    /**
+     * This class gives access to the first band of an image.
+     * For byte images (like the grayscale ones) the samples are read directly in the data buffer of the image,
+     * without copy. For the other images (16 bits grayscale for example), the full values of the first band are
+     * copied once in an int array, so two different samples are never mixed up.
+     */
+    static class PatternSamples {
+
+        private final byte[] data;                      /** The bytes containing the samples (null if the samples are copied). */
+        private final int[] values;                     /** The samples copied from an image that is not a byte image (null otherwise). */
+        private final int offset;                       /** The index of the sample of the pixel (0, 0). */
+        private final int pixelStride;                  /** The distance between two pixels of a line. */
+        private final int scanlineStride;               /** The distance between two lines. */
+
+        /**
+         * Constructor.
+         * @param image: the image to read
+         */
+        PatternSamples(BufferedImage image) {
+            WritableRaster raster = image.getRaster();
+            DataBuffer buffer = raster.getDataBuffer();
+            SampleModel sampleModel = raster.getSampleModel();
+
+            if (buffer instanceof DataBufferByte && buffer.getNumBanks() == 1 && sampleModel instanceof ComponentSampleModel) {
+                ComponentSampleModel componentSampleModel = (ComponentSampleModel) sampleModel;
+                this.data = ((DataBufferByte) buffer).getData();
+                this.values = null;
+                this.offset = buffer.getOffset() + componentSampleModel.getOffset(
+                        -raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY(), 0);
+                this.pixelStride = componentSampleModel.getPixelStride();
+                this.scanlineStride = componentSampleModel.getScanlineStride();
+            }
+            else {
+                int width = image.getWidth();
+                int height = image.getHeight();
+                int[] line = new int[width];
+
+                this.data = null;
+                this.values = new int[width * height];
+                this.offset = 0;
+                this.pixelStride = 1;
+                this.scanlineStride = width;
+
+                for (int j = 0; j < height; j++) {
+                    raster.getSamples(0, j, width, 1, 0, line);
+                    System.arraycopy(line, 0, this.values, j * width, width);
+                }
+            }
+        }
+
+        /**
+         * Returns the sample of a pixel.
+         * @param x: the x of the pixel
+         * @param y: the y of the pixel
+         * @return the sample (0 to 255 for the byte images)
+         */
+        int get(int x, int y) {
+            if (this.values != null)
+                return this.values[y * this.scanlineStride + x];
+
+            return this.data[this.offset + y * this.scanlineStride + x * this.pixelStride] & 0xFF;
+        }
+
+        /**
+         * Returns the value of a table indexed by the samples (the colors), for a sample that can be out of the table.
+         * @param table: the table
+         * @param sample: the sample
+         * @param missing: the value for the samples out of the table
+         * @return the value
+         */
+        static int lookup(int[] table, int sample, int missing) {
+            return sample >= 0 && sample < table.length ? table[sample] : missing;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,400 @@
+package physics.Util;
+
+import javafx.scene.shape.Rectangle;
+import physics.PhysicsEngine;
+import physics.objects.PhysicObject;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the static objects of a pattern image loaded in an engine, that can be reloaded when the
+ * image is edited without restarting the world.
+ *
+ * The image is cut in square blocks of pixels and the rectangles of each block are found separately (a rectangle
+ * never crosses the border of a block), so the objects of a block only depend on its pixels. To reload the level,
+ * the new image is compared with the previous one block by block, and only the blocks that changed are decomposed
+ * again: the objects with the same rectangle are kept, the other objects of the block are resized to the new
+ * rectangles of their color, removed, or added if there are more rectangles. The engine refreshes its spatial
+ * structures for these objects only.
+ *
+ * A reload is done in two steps: prepareReload compares and decomposes the new image and can be called from any
+ * thread (for a big image, in a thread of the editor or of the server), then apply changes the objects of the engine
+ * and must be called by the thread updating the engine, between two updates.
+ * The entities of the image are ignored.
+ */
+public class ReloadablePatternLevel {
+
+    private static final int MAX_BLOCK_SIZE = 4096;     /** The maximum size of a block (the rectangles of a block are stored in a long). */
+
+    private final ObjectsImageLoader loader;            /** The loader creating the objects. */
+    private final PhysicsEngine engine;                 /** The engine where the objects are. */
+    private final int blockSize;                        /** The size of a block in pixels. */
+    private final int[] colors;                         /** The colors of the static objects. */
+    private final int[] colorIndexes;                   /** The index of each color of static object in the colors, plus 1 (0 for the other colors). */
+    private int width = 0;                              /** The width of the image loaded. */
+    private int height = 0;                             /** The height of the image loaded. */
+    private byte[] pixels = new byte[0];                /** The index of the color of each pixel of the image loaded, plus 1 (0 for no object). */
+    private final Map<Long, List<PlacedObject>> blocks = new HashMap<>();  /** The objects of each block (by key of block). */
+    private int lastChangedBlocks = 0;                  /** The number of blocks changed by the last reload. */
+    private int lastAddedObjects = 0;                   /** The number of objects added by the last reload. */
+    private int lastRemovedObjects = 0;                 /** The number of objects removed by the last reload. */
+    private int lastResizedObjects = 0;                 /** The number of objects moved or resized by the last reload. */
+    private long lastPrepareNanos = 0;                  /** The time of the last preparation of a reload. */
+    private long lastApplyNanos = 0;                    /** The time of the last application of a reload. */
+
+    /**
+     * Constructor. The static objects of the image are added to the engine.
+     * @param loader: the loader creating the objects from the colors
+     * @param engine: the engine where the objects are added
+     * @param image: the grayscale image
+     * @param blockSize: the size in pixels of the blocks compared at each reload (the smaller, the less objects
+     *                 are changed by a reload, but the more objects cut at the borders of the blocks)
+     */
+    public ReloadablePatternLevel(ObjectsImageLoader loader, PhysicsEngine engine, BufferedImage image, int blockSize) {
+        if (blockSize < 1 || blockSize > MAX_BLOCK_SIZE)
+            throw new IllegalArgumentException("The size of a block must be between 1 and " + MAX_BLOCK_SIZE + " pixels.");
+
+        this.loader = loader;
+        this.engine = engine;
+        this.blockSize = blockSize;
+        this.colorIndexes = new int[loader.getColorTableSize()];
+
+        // the colors of the static objects
+        List<Integer> staticColors = new ArrayList<>();
+        for (int color : loader.getColorsOfObjects()) {
+            if (color >= 0 && this.colorIndexes[color] == 0 && staticColors.size() < 255
+                    && !loader.isEntityColor(color)) {
+                staticColors.add(color);
+                this.colorIndexes[color] = staticColors.size();
+            }
+        }
+
+        this.colors = new int[staticColors.size()];
+        for (int i = 0; i < this.colors.length; i++)
+            this.colors[i] = staticColors.get(i);
+
+        apply(prepareReload(image));
+    }
+
+    /**
+     * This function reloads the level with a new version of the image (see prepareReload and apply).
+     * It must be called by the thread updating the engine.
+     * @param image: the new grayscale image
+     * @return the number of blocks changed
+     */
+    public int reload(BufferedImage image) {
+        apply(prepareReload(image));
+        return this.lastChangedBlocks;
+    }
+
+    /**
+     * This function compares a new version of the image with the image loaded and decomposes the blocks that changed.
+     * It doesn't change the engine, so it can be called from any thread, but only one reload must be prepared at a time.
+     * The image can have another size than the previous one.
+     * @param image: the new grayscale image
+     * @return the reload, to apply with the function apply
+     */
+    public Reload prepareReload(BufferedImage image) {
+        long start = System.nanoTime();
+        int newWidth = image.getWidth();
+        int newHeight = image.getHeight();
+
+        // the colors of the pixels
+        ObjectsImageLoader.PatternSamples samples = new ObjectsImageLoader.PatternSamples(image);
+        byte[] newPixels = new byte[newWidth * newHeight];
+        for (int y = 0; y < newHeight; y++)
+            for (int x = 0; x < newWidth; x++)
+                newPixels[y * newWidth + x] = (byte) ObjectsImageLoader.PatternSamples.lookup(this.colorIndexes, samples.get(x, y), 0);
+
+        // the blocks changed
+        Reload reload = new Reload(this.pixels, newWidth, newHeight, newPixels);
+        int blocksX = (Math.max(this.width, newWidth) + this.blockSize - 1) / this.blockSize;
+        int blocksY = (Math.max(this.height, newHeight) + this.blockSize - 1) / this.blockSize;
+        boolean[] visited = new boolean[this.blockSize * this.blockSize];
+
+        for (int blockY = 0; blockY < blocksY; blockY++) {
+            for (int blockX = 0; blockX < blocksX; blockX++) {
+                if (!isBlockChanged(blockX, blockY, newWidth, newHeight, newPixels))
+                    continue;
+
+                reload.blockKeys.add(getBlockKey(blockX, blockY));
+
+                // the rectangles of the block (a rectangle never crosses its border)
+                int x0 = blockX * this.blockSize, y0 = blockY * this.blockSize;
+                int width = Math.max(0, Math.min(this.blockSize, newWidth - x0));
+                int height = Math.max(0, Math.min(this.blockSize, newHeight - y0));
+                reload.blockRectangles.add(ObjectsImageLoader.decomposeArea((x, y) -> newPixels[y * newWidth + x], x0, y0, width, height, visited));
+            }
+        }
+
+        this.lastPrepareNanos = System.nanoTime() - start;
+        return reload;
+    }
+
+    /**
+     * This function changes the objects of the engine for a reload prepared with prepareReload.
+     * It must be called by the thread updating the engine, between two updates.
+     * @param reload: the reload
+     */
+    public void apply(Reload reload) {
+        if (reload.previousPixels != this.pixels)
+            throw new IllegalStateException("The reload has been prepared for another version of the level.");
+
+        long start = System.nanoTime();
+        this.lastAddedObjects = 0;
+        this.lastRemovedObjects = 0;
+        this.lastResizedObjects = 0;
+
+        for (int i = 0; i < reload.blockKeys.size(); i++)
+            applyBlock(reload.blockKeys.get(i), reload.blockRectangles.get(i));
+
+        this.width = reload.width;
+        this.height = reload.height;
+        this.pixels = reload.pixels;
+        this.lastChangedBlocks = reload.blockKeys.size();
+        this.lastApplyNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * This function returns if the pixels of a block are not the same in the image loaded and in a new image.
+     * @param blockX: the x of the block
+     * @param blockY: the y of the block
+     * @param newWidth: the width of the new image
+     * @param newHeight: the height of the new image
+     * @param newPixels: the colors of the pixels of the new image
+     * @return if the block changed
+     */
+    private boolean isBlockChanged(int blockX, int blockY, int newWidth, int newHeight, byte[] newPixels) {
+        int x0 = blockX * this.blockSize, y0 = blockY * this.blockSize;
+        int x1 = Math.min(x0 + this.blockSize, Math.max(this.width, newWidth));
+        int y1 = Math.min(y0 + this.blockSize, Math.max(this.height, newHeight));
+
+        // same size: the lines are compared as arrays
+        if (this.width == newWidth && this.height == newHeight) {
+            for (int y = y0; y < y1; y++)
+                if (!Arrays.equals(this.pixels, y * newWidth + x0, y * newWidth + x1, newPixels, y * newWidth + x0, y * newWidth + x1))
+                    return true;
+
+            return false;
+        }
+
+        for (int y = y0; y < y1; y++)
+            for (int x = x0; x < x1; x++)
+                if (getPixel(this.pixels, this.width, this.height, x, y) != getPixel(newPixels, newWidth, newHeight, x, y))
+                    return true;
+
+        return false;
+    }
+
+    /**
+     * This function changes the objects of a block for its new rectangles. The objects with the same rectangle
+     * are kept, the other ones are given a new rectangle of their color or removed, and objects are created for
+     * the rectangles left. The objects removed from the engine by the game are forgotten and not added back.
+     * @param blockKey: the key of the block
+     * @param rectangles: the new rectangles of the block
+     */
+    private void applyBlock(long blockKey, int[] rectangles) {
+        List<PlacedObject> previousObjects = this.blocks.remove(blockKey);
+        Map<Long, PlacedObject> previousByRectangle = new HashMap<>();
+        if (previousObjects != null)
+            for (PlacedObject placed : previousObjects)
+                previousByRectangle.put(placed.getKey(this.blockSize), placed);
+
+        // the objects with the same rectangle
+        List<PlacedObject> objects = new ArrayList<>(rectangles.length / 5);
+        List<Integer> newRectangles = new ArrayList<>();
+        for (int i = 0; i < rectangles.length; i += 5) {
+            long key = PlacedObject.getKey(rectangles[i], rectangles[i + 1], rectangles[i + 2], rectangles[i + 3], rectangles[i + 4], this.blockSize);
+            PlacedObject placed = previousByRectangle.remove(key);
+            if (placed == null)
+                newRectangles.add(i);
+            else if (this.engine.contains(placed.object))
+                objects.add(placed);
+        }
+
+        // the other objects, by color
+        List<List<PlacedObject>> freeObjects = new ArrayList<>();
+        for (int i = 0; i < this.colors.length; i++)
+            freeObjects.add(new ArrayList<>());
+        for (PlacedObject placed : previousByRectangle.values())
+            if (this.engine.contains(placed.object))
+                freeObjects.get(placed.colorIndex).add(placed);
+
+        // the new rectangles: an object of the same color is resized, otherwise an object is created
+        for (int i : newRectangles) {
+            List<PlacedObject> free = freeObjects.get(rectangles[i]);
+            PlacedObject placed;
+            if (!free.isEmpty()) {
+                placed = free.remove(free.size() - 1);
+                placed.setRectangle(rectangles[i + 1], rectangles[i + 2], rectangles[i + 3], rectangles[i + 4]);
+                this.lastResizedObjects++;
+            }
+            else {
+                placed = new PlacedObject(this.loader.getObjectFromColor(this.colors[rectangles[i]]), rectangles[i]);
+                placed.object.setHitbox(new Rectangle());
+                placed.setRectangle(rectangles[i + 1], rectangles[i + 2], rectangles[i + 3], rectangles[i + 4]);
+                this.engine.addObject(placed.object);
+                this.lastAddedObjects++;
+            }
+            objects.add(placed);
+        }
+
+        // the objects left
+        for (List<PlacedObject> free : freeObjects) {
+            for (PlacedObject placed : free) {
+                this.engine.removeObject(placed.object);
+                this.lastRemovedObjects++;
+            }
+        }
+
+        if (!objects.isEmpty())
+            this.blocks.put(blockKey, objects);
+    }
+
+    /**
+     * Returns the color of a pixel (0 out of the image).
+     * @param pixels: the colors of the pixels
+     * @param width: the width of the image
+     * @param height: the height of the image
+     * @param x: the x of the pixel
+     * @param y: the y of the pixel
+     * @return the index of the color plus 1, or 0
+     */
+    private static byte getPixel(byte[] pixels, int width, int height, int x, int y) {
+        return x < width && y < height ? pixels[y * width + x] : 0;
+    }
+
+    /**
+     * Returns the key of a block.
+     * @param blockX: the x of the block
+     * @param blockY: the y of the block
+     * @return the key
+     */
+    private static long getBlockKey(int blockX, int blockY) {
+        return ((long) blockX << 32) | (blockY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the number of objects of the level in the engine (the objects removed by the game are not counted).
+     * @return the number of objects
+     */
+    public int getObjectsCount() {
+        int count = 0;
+        for (List<PlacedObject> objects : this.blocks.values())
+            for (PlacedObject placed : objects)
+                if (this.engine.contains(placed.object))
+                    count++;
+
+        return count;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getLastChangedBlocks() {
+        return lastChangedBlocks;
+    }
+
+    public int getLastAddedObjects() {
+        return lastAddedObjects;
+    }
+
+    public int getLastRemovedObjects() {
+        return lastRemovedObjects;
+    }
+
+    public int getLastResizedObjects() {
+        return lastResizedObjects;
+    }
+
+    /**
+     * Returns the time of the last call to prepareReload (the comparison and the decomposition of the image).
+     * @return the time in nanoseconds
+     */
+    public long getLastPrepareNanos() {
+        return lastPrepareNanos;
+    }
+
+    /**
+     * Returns the time of the last call to apply (the changes of the engine).
+     * @return the time in nanoseconds
+     */
+    public long getLastApplyNanos() {
+        return lastApplyNanos;
+    }
+
+    /**
+     * A reload prepared: the new image and the rectangles of the blocks that changed.
+     */
+    public static class Reload {
+
+        private final byte[] previousPixels;                        /** The pixels of the image loaded when the reload has been prepared. */
+        private final int width;                                    /** The width of the new image. */
+        private final int height;                                   /** The height of the new image. */
+        private final byte[] pixels;                                /** The colors of the pixels of the new image. */
+        private final List<Long> blockKeys = new ArrayList<>();     /** The keys of the blocks changed. */
+        private final List<int[]> blockRectangles = new ArrayList<>();  /** The new rectangles of each block changed. */
+
+        Reload(byte[] previousPixels, int width, int height, byte[] pixels) {
+            this.previousPixels = previousPixels;
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+
+        /**
+         * Returns the number of blocks changed by the reload.
+         * @return the number of blocks
+         */
+        public int getChangedBlocks() {
+            return blockKeys.size();
+        }
+    }
+
+    /**
+     * An object of the level and its rectangle in the image.
+     */
+    private static class PlacedObject {
+
+        private final PhysicObject object;          /** The object. */
+        private final int colorIndex;               /** The index of the color of the object. */
+        private int x;                              /** The x of the rectangle. */
+        private int y;                              /** The y of the rectangle. */
+        private int width;                          /** The width of the rectangle. */
+        private int height;                         /** The height of the rectangle. */
+
+        PlacedObject(PhysicObject object, int colorIndex) {
+            this.object = object;
+            this.colorIndex = colorIndex;
+        }
+
+        /**
+         * To change the rectangle of the object, its hit box is changed in place.
+         */
+        void setRectangle(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+
+            this.object.setBounds(x, y, width, height);
+        }
+
+        long getKey(int blockSize) {
+            return getKey(this.colorIndex, this.x, this.y, this.width, this.height, blockSize);
+        }
+
+        /**
+         * Returns the key of a rectangle in its block: the color and the rectangle relatively to the block.
+         */
+        static long getKey(int colorIndex, int x, int y, int width, int height, int blockSize) {
+            return ((long) colorIndex << 52) | ((long) (x % blockSize) << 39) | ((long) (y % blockSize) << 26) | ((long) width << 13) | height;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package physics.Util;
+
+import javafx.scene.shape.Rectangle;
+import physics.PhysicsEngine;
+import physics.Side;
+import physics.WorldSnapshot;
+import physics.objects.PhysicEntity;
+import physics.objects.PhysicObject;
+
+import java.io.File;
+import java.util.function.Supplier;
+
+/**
+ * This class represents a scenario for the headless runner: an engine to create, a number of ticks to simulate
+ * with a fixed delta and the file where the trajectories of the entities are written.
+ * The engine is created by the runner in the thread running the scenario, so the factory can load a level
+ * (with an ObjectsImageLoader for instance) and must create a new engine at each call. A scenario can also start
+ * from a snapshot of an engine (see WorldSnapshot).
+ */
+public class SimulationScenario {
+
+    /**
+     * The formats of the trajectories.
+     * CSV: a header line and then one line per entity and per tick: tick,handle,x,y,velocityX,velocityY
+     * BINARY: the magic number ("TRAJ"), the version and the delta, then for each tick the tick, the number of
+     * entities and for each entity its handle (int) and its x, y, velocity x and velocity y (doubles)
+     */
+    public enum OutputFormat {
+        CSV,
+        BINARY
+    }
+
+    private final String name;                              /** The name of the scenario. */
+    private final Supplier<PhysicsEngine> engineFactory;    /** The function creating the engine. */
+    private final int ticks;                                /** The number of updates of the engine. */
+    private final float delta;                              /** The delta of each update. */
+    private final File output;                              /** The file of the trajectories (null to not write them). */
+    private final OutputFormat outputFormat;                /** The format of the trajectories. */
+
+    /**
+     * Constructor.
+     * @param name: the name of the scenario
+     * @param engineFactory: the function creating the engine with its objects
+     * @param ticks: the number of updates of the engine
+     * @param delta: the delta of each update
+     * @param output: the file of the trajectories (null to not write them)
+     * @param outputFormat: the format of the trajectories
+     */
+    public SimulationScenario(String name, Supplier<PhysicsEngine> engineFactory, int ticks, float delta, File output, OutputFormat outputFormat) {
+        if (engineFactory == null || ticks < 0 || delta < 0)
+            throw new IllegalArgumentException("A scenario needs an engine factory, a positive number of ticks and a positive delta.");
+
+        this.name = name;
+        this.engineFactory = engineFactory;
+        this.ticks = ticks;
+        this.delta = delta;
+        this.output = output;
+        this.outputFormat = outputFormat == null ? OutputFormat.BINARY : outputFormat;
+    }
+
+    /**
+     * Constructor of a scenario starting from a snapshot.
+     * The state of the snapshot is copied now, so the snapshot can be reused after. At each run, the factory creates
+     * the engine with its settings (gravity, force zones...) and an object is added for each object of the snapshot:
+     * a static object or an entity with its velocity. These objects do nothing when they collide, and their handles
+     * are given by the new engine, so they can be different from the handles of the snapshot.
+     * @param name: the name of the scenario
+     * @param engineFactory: the function creating the engine without its objects
+     * @param snapshot: the state of the objects at the start
+     * @param ticks: the number of updates of the engine
+     * @param delta: the delta of each update
+     * @param output: the file of the trajectories (null to not write them)
+     * @param outputFormat: the format of the trajectories
+     */
+    public SimulationScenario(String name, Supplier<PhysicsEngine> engineFactory, WorldSnapshot snapshot, int ticks, float delta, File output, OutputFormat outputFormat) {
+        this(name, getSnapshotFactory(engineFactory, snapshot), ticks, delta, output, outputFormat);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Supplier<PhysicsEngine> getEngineFactory() {
+        return engineFactory;
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    public float getDelta() {
+        return delta;
+    }
+
+    public File getOutput() {
+        return output;
+    }
+
+    public OutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * This function returns a factory creating an engine with the objects of a snapshot.
+     * @param engineFactory: the function creating the engine without its objects
+     * @param snapshot: the snapshot (copied now)
+     * @return the factory
+     */
+    private static Supplier<PhysicsEngine> getSnapshotFactory(Supplier<PhysicsEngine> engineFactory, WorldSnapshot snapshot) {
+        if (engineFactory == null || snapshot == null)
+            throw new IllegalArgumentException("A scenario from a snapshot needs an engine factory and a snapshot.");
+
+        // for each object: x, y, width, height, velocity x and velocity y
+        int count = snapshot.size();
+        boolean[] entities = new boolean[count];
+        double[] states = new double[count * 6];
+        for (int i = 0; i < count; i++) {
+            entities[i] = snapshot.isEntity(i);
+            states[i * 6] = snapshot.getX(i);
+            states[i * 6 + 1] = snapshot.getY(i);
+            states[i * 6 + 2] = snapshot.getWidth(i);
+            states[i * 6 + 3] = snapshot.getHeight(i);
+            states[i * 6 + 4] = snapshot.getVelocityX(i);
+            states[i * 6 + 5] = snapshot.getVelocityY(i);
+        }
+
+        return () -> {
+            PhysicsEngine engine = engineFactory.get();
+            for (int i = 0; i < count; i++) {
+                Rectangle hitbox = new Rectangle(states[i * 6], states[i * 6 + 1], states[i * 6 + 2], states[i * 6 + 3]);
+                if (entities[i]) {
+                    SnapshotEntity entity = new SnapshotEntity(hitbox);
+                    entity.setVelocity(states[i * 6 + 4], states[i * 6 + 5]);
+                    engine.addObject(entity);
+                }
+                else
+                    engine.addObject(new SnapshotObject(hitbox));
+            }
+            return engine;
+        };
+    }
+
+    /**
+     * A static object of a snapshot.
+     */
+    private static class SnapshotObject extends PhysicObject {
+
+        SnapshotObject(Rectangle hitbox) {
+            super("snapshot", hitbox);
+        }
+
+        @Override
+        public void collisionTriggeredOnSide(Side side, PhysicObject object) {
+        }
+    }
+
+    /**
+     * An entity of a snapshot.
+     */
+    private static class SnapshotEntity extends PhysicEntity {
+
+        SnapshotEntity(Rectangle hitbox) {
+            super("snapshot", hitbox);
+        }
+
+        @Override
+        public void collisionTriggeredOnSide(Side side, PhysicObject object) {
+        }
+    }
+}
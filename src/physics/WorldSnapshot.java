@@ -0,0 +1,140 @@
+package physics;
+
+import javafx.scene.shape.Rectangle;
+import physics.objects.PhysicEntity;
+import physics.objects.PhysicObject;
+
+import java.util.List;
+
+/**
+ * This class stores the state of the objects of the engine after an update: the handle, the hit box and the
+ * velocity of each object (a velocity of 0 for the objects that are not entities).
+ * A snapshot is a copy, so it can be read by another thread while the engine updates the objects. The values are
+ * stored in arrays allocated once (they only grow when the engine has more objects), so the engine doesn't create
+ * objects to publish a snapshot. A snapshot is reused: when it's written again, the static objects that didn't
+ * change since its previous content (same object at the same index, not moved or resized) are not copied again,
+ * only the entities and the objects changed are.
+ * The snapshots are published by the engine through a snapshot channel (see SnapshotChannel).
+ */
+public class WorldSnapshot {
+
+    private long update = -1;                       /** The number of the update of the snapshot (-1 if nothing has been published). */
+    private int size = 0;                           /** The number of objects in the snapshot. */
+    private int[] handles = new int[0];             /** The handle of each object. */
+    private boolean[] entities = new boolean[0];    /** If each object is an entity. */
+    private double[] x = new double[0];             /** The x of each hit box. */
+    private double[] y = new double[0];             /** The y of each hit box. */
+    private double[] widths = new double[0];        /** The width of each hit box. */
+    private double[] heights = new double[0];       /** The height of each hit box. */
+    private double[] velocitiesX = new double[0];   /** The velocity in x of each object. */
+    private double[] velocitiesY = new double[0];   /** The velocity in y of each object. */
+
+    /**
+     * To copy the state of the objects in the snapshot.
+     * @param update: the number of the update
+     * @param objects: the objects of the engine
+     * @param changedUpdates: the first update published after the last change of the object at each index
+     */
+    void write(long update, List<PhysicObject> objects, long[] changedUpdates) {
+        int count = objects.size();
+        boolean full = false;
+        if (this.handles.length < count) {
+            full = true;
+            int capacity = Math.max(16, count * 2);
+            this.handles = new int[capacity];
+            this.entities = new boolean[capacity];
+            this.x = new double[capacity];
+            this.y = new double[capacity];
+            this.widths = new double[capacity];
+            this.heights = new double[capacity];
+            this.velocitiesX = new double[capacity];
+            this.velocitiesY = new double[capacity];
+        }
+
+        for (int i = 0; i < count; i++) {
+            PhysicObject object = objects.get(i);
+
+            // a static object already in the snapshot and not changed since
+            if (!full && changedUpdates[i] <= this.update && !(object instanceof PhysicEntity))
+                continue;
+
+            Rectangle hitbox = object.getHitbox();
+            this.handles[i] = object.getHandle();
+            this.x[i] = hitbox.getX();
+            this.y[i] = hitbox.getY();
+            this.widths[i] = hitbox.getWidth();
+            this.heights[i] = hitbox.getHeight();
+
+            if (object instanceof PhysicEntity) {
+                this.entities[i] = true;
+                this.velocitiesX[i] = ((PhysicEntity) object).getVelocityX();
+                this.velocitiesY[i] = ((PhysicEntity) object).getVelocityY();
+            } else {
+                this.entities[i] = false;
+                this.velocitiesX[i] = 0;
+                this.velocitiesY[i] = 0;
+            }
+        }
+
+        this.size = count;
+        this.update = update;
+    }
+
+    /**
+     * Returns the number of the update of the snapshot: the snapshots of the same engine are numbered in order.
+     * @return the number of the update (-1 if nothing has been published yet)
+     */
+    public long getUpdate() {
+        return update;
+    }
+
+    /**
+     * Returns the number of objects in the snapshot.
+     * @return the number of objects
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the handle of an object (see PhysicsEngine.getObject).
+     * @param index: the index of the object in the snapshot
+     * @return the handle
+     */
+    public int getHandle(int index) {
+        return this.handles[index];
+    }
+
+    /**
+     * Returns if an object is an entity.
+     * @param index: the index of the object in the snapshot
+     * @return if the object is an entity
+     */
+    public boolean isEntity(int index) {
+        return this.entities[index];
+    }
+
+    public double getX(int index) {
+        return this.x[index];
+    }
+
+    public double getY(int index) {
+        return this.y[index];
+    }
+
+    public double getWidth(int index) {
+        return this.widths[index];
+    }
+
+    public double getHeight(int index) {
+        return this.heights[index];
+    }
+
+    public double getVelocityX(int index) {
+        return this.velocitiesX[index];
+    }
+
+    public double getVelocityY(int index) {
+        return this.velocitiesY[index];
+    }
+}
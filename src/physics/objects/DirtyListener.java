@@ -0,0 +1,14 @@
+package physics.objects;
+
+/**
+ * This interface represents a listener of the changes of the objects.
+ * The engine listens to its objects to refresh only the objects that changed since the last update.
+ */
+public interface DirtyListener {
+
+	/**
+	 * This function is called when an object becomes dirty (its position, its size or its velocity changed).
+	 * @param object: the object
+	 */
+	void objectDirty(PhysicObject object);
+}
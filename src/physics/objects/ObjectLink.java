@@ -0,0 +1,52 @@
+package physics.objects;
+
+/**
+ * This class represents the link between an object and the engine that contains it.
+ * The engine gets it when it attaches the object (see PhysicObject.attach) and uses it to change the state of
+ * the object that only the engine must change: the handle and the dirty flag.
+ * An object has only one link, and it can only be attached to one engine at a time, so the game can't get the
+ * link of an object that is in an engine.
+ */
+public final class ObjectLink {
+
+	private final PhysicObject object;		/** The linked object. */
+
+	/**
+	 * The constructor of the link, used by the object.
+	 * @param object: the linked object
+	 */
+	ObjectLink(PhysicObject object) {
+		this.object = object;
+	}
+
+	/**
+	 * Getter of the linked object.
+	 * @return the object
+	 */
+	public PhysicObject getObject() {
+		return object;
+	}
+
+	/**
+	 * To give its handle to the object, when it's added to the engine.
+	 * @param handle: the handle
+	 */
+	public void setHandle(int handle) {
+		this.object.setHandle(handle);
+	}
+
+	/**
+	 * To mark the object as refreshed by the engine.
+	 */
+	public void clearDirty() {
+		this.object.clearDirty();
+	}
+
+	/**
+	 * To detach the object from the engine, when it's removed: the object gets NO_HANDLE and stops telling the
+	 * engine its changes. After this, the link must not be used by the engine anymore.
+	 */
+	public void detach() {
+		this.object.detach();
+	}
+}
@@ -6,19 +6,24 @@ import javafx.scene.shape.Rectangle;
 /**
  * This class represents an physic entity for the physics engine.
  * It's a simple physic object but that can move.
+ * The velocity is changed with the setters (setVelocity, setVelocityX, setVelocityY...), which tell the engine
+ * that the entity changed.
  * @author Tom Befieux
  *
  */
 public abstract class PhysicEntity extends PhysicObject {
 	
-	protected Point2D velocity;						/** The velocity of the object in physics unit per second. */
+	private double velocityX;						/** The velocity of the object in x in physics unit per second. */
+	private double velocityY;						/** The velocity of the object in y in physics unit per second. */
+	private float pendingDelta = 0;					/** The time not simulated yet for the entity (used by the engines with a level of detail or a deadline). */
+	private float gravityScale = 1;					/** The factor applied on the gravity for this entity. */
+	private boolean important = false;				/** If the entity is never deferred by an update with a deadline. */
 	
 	/**
 	 * The constructor of the object.
 	 */
 	public PhysicEntity() {
 		super();
-		this.velocity = new Point2D(0, 0);
 	}
 	
 	/**
@@ -27,7 +32,6 @@ public abstract class PhysicEntity extends PhysicObject {
 	 */
 	public PhysicEntity(Rectangle hitbox) {
 		super(hitbox);
-		this.velocity = new Point2D(0, 0);
 	}
 	
 	/**
@@ -37,13 +41,12 @@ public abstract class PhysicEntity extends PhysicObject {
 	 */
 	public PhysicEntity(String name, Rectangle hitbox) {
 		super(name, hitbox);
-		this.velocity = new Point2D(0, 0);
 	}
 	
 	@Override
 	public void update(float delta) {
 		// change the position of the object with velocity
-		setPosition(getNextPosition(delta));
+		setPosition(getNextX(delta), getNextY(delta));
 	}
 
 	/**
@@ -52,9 +55,25 @@ public abstract class PhysicEntity extends PhysicObject {
 	 * @return the next position
 	 */
 	public Point2D getNextPosition(float delta) {
-		double x = this.getPosition().getX() + this.velocity.getX() * delta;
-		double y = this.getPosition().getY() + this.velocity.getY() * delta;
-		return new Point2D(x, y);
+		return new Point2D(getNextX(delta), getNextY(delta));
+	}
+
+	/**
+	 * This function returns the next x according with the velocity with a delta.
+	 * @param delta: the delta time
+	 * @return the next x
+	 */
+	public double getNextX(float delta) {
+		return getX() + this.velocityX * delta;
+	}
+
+	/**
+	 * This function returns the next y according with the velocity with a delta.
+	 * @param delta: the delta time
+	 * @return the next y
+	 */
+	public double getNextY(float delta) {
+		return getY() + this.velocityY * delta;
 	}
 
 	/**
@@ -62,7 +81,7 @@ public abstract class PhysicEntity extends PhysicObject {
 	 * @return if the entity is moving
 	 */
 	public boolean isMoving() {
-		return (getVelocity().getY() != 0 || getVelocity().getX() != 0);
+		return (this.velocityY != 0 || this.velocityX != 0);
 	}
 
 	/**
@@ -70,37 +89,153 @@ public abstract class PhysicEntity extends PhysicObject {
 	 * @param velocity: the velocity
 	 */
 	public void addVelocity(Point2D velocity) {
-		this.velocity = new Point2D(this.velocity.getX() + velocity.getX(), this.velocity.getY() + velocity.getY());
+		addVelocity(velocity.getX(), velocity.getY());
 	}
 	
+	/**
+	 * To add a velocity to the object.
+	 * @param x: the velocity to add in x
+	 * @param y: the velocity to add in y
+	 */
+	public void addVelocity(double x, double y) {
+		this.velocityX += x;
+		this.velocityY += y;
+		markDirty();
+	}
+
 	/**
 	 * To subtract a velocity.
 	 * @param velocity: the velocity
 	 */
 	public void subtractVelocity(Point2D velocity) {
-		this.velocity = new Point2D(this.velocity.getX() - velocity.getX(), this.velocity.getY() - velocity.getY());
+		subtractVelocity(velocity.getX(), velocity.getY());
+	}
+
+	/**
+	 * To subtract a velocity.
+	 * @param x: the velocity to subtract in x
+	 * @param y: the velocity to subtract in y
+	 */
+	public void subtractVelocity(double x, double y) {
+		this.velocityX -= x;
+		this.velocityY -= y;
+		markDirty();
 	}
 	
 	/**
 	 * To stop the velocity of the object.
 	 */
 	public void stopMovement() {
-		setVelocity(new Point2D(0, 0));
+		setVelocity(0, 0);
 	}
 	
 	/**
 	 * Getter for the velocity of the object.
+	 * It creates a point, so the engine uses getVelocityX and getVelocityY.
 	 * @return the velocity.
+	 * @deprecated use getVelocityX and getVelocityY, which create no object
 	 */
+	@Deprecated
 	public Point2D getVelocity() {
-		return velocity;
+		return new Point2D(this.velocityX, this.velocityY);
+	}
+
+	/**
+	 * Getter for the velocity of the object in x.
+	 * @return the velocity in x
+	 */
+	public double getVelocityX() {
+		return velocityX;
+	}
+
+	/**
+	 * Getter for the velocity of the object in y.
+	 * @return the velocity in y
+	 */
+	public double getVelocityY() {
+		return velocityY;
+	}
+
+	/**
+	 * Getter for the time not simulated yet for the entity.
+	 * @return the time in second
+	 */
+	public float getPendingDelta() {
+		return pendingDelta;
+	}
+
+	/**
+	 * Setter for the time not simulated yet for the entity.
+	 * It's used by the engines that don't update the entity at each update.
+	 * @param pendingDelta: the time in second
+	 */
+	public void setPendingDelta(float pendingDelta) {
+		this.pendingDelta = pendingDelta;
+	}
+
+	/**
+	 * Getter for the factor applied on the gravity for this entity.
+	 * @return the gravity scale
+	 */
+	public float getGravityScale() {
+		return gravityScale;
+	}
+
+	/**
+	 * Setter for the factor applied on the gravity (and on the gravity zones) for this entity.
+	 * 0 means that the entity is not affected by the gravity.
+	 * @param gravityScale: the gravity scale
+	 */
+	public void setGravityScale(float gravityScale) {
+		this.gravityScale = gravityScale;
+	}
+
+	public boolean isImportant() {
+		return important;
+	}
+
+	/**
+	 * To flag the entity as important: an update with a deadline always updates it.
+	 * @param important: true if the entity is important
+	 */
+	public void setImportant(boolean important) {
+		this.important = important;
 	}
 
 	/**
 	 * Setter for the velocity.
 	 * @param velocity: the new velocity.
+	 * @deprecated use setVelocity(double, double), which needs no point
 	 */
+	@Deprecated
 	public void setVelocity(Point2D velocity) {
-		this.velocity = velocity;
+		setVelocity(velocity.getX(), velocity.getY());
+	}
+
+	/**
+	 * Setter for the velocity.
+	 * @param x: the new velocity in x
+	 * @param y: the new velocity in y
+	 */
+	public void setVelocity(double x, double y) {
+		this.velocityX = x;
+		this.velocityY = y;
+		markDirty();
+	}
+
+	/**
+	 * Setter for the velocity in x.
+	 * @param x: the new velocity in x
+	 */
+	public void setVelocityX(double x) {
+		setVelocity(x, this.velocityY);
+	}
+
+	/**
+	 * Setter for the velocity in y.
+	 * @param y: the new velocity in y
+	 */
+	public void setVelocityY(double y) {
+		setVelocity(this.velocityX, y);
 	}
 }
@@ -12,9 +12,17 @@ import physics.Updatable;
  *
  */
 public abstract class PhysicObject implements Updatable {
+
+	public static final int NO_HANDLE = 0;		/** The handle of an object not in an engine. */
+	public static final int TYPES_COUNT = 64;	/** The number of collision types (the type ids are between 0 and TYPES_COUNT - 1). */
 	
 	protected Rectangle hitbox;					/** The hit box of the object. */
 	protected String name;						/** The name of this object. */
+	private int handle = NO_HANDLE;				/** The handle of the object in its engine. */
+	private int typeId = 0;						/** The collision type of the object (see PhysicsEngine.setCollisionHandler). */
+	private boolean dirty = false;				/** If the object changed since the engine refreshed it. */
+	private DirtyListener dirtyListener = null;	/** The listener told when the object becomes dirty (its engine). */
+	private final ObjectLink link = new ObjectLink(this);	/** The link given to the engine that contains the object. */
 	
 	/**
 	 * The constructor of the object.
@@ -26,6 +34,8 @@ public abstract class PhysicObject implements Updatable {
 	
 	/**
 	 * The constructor of the object with the hit box.
+	 * The rectangle is not copied: it's the hit box, moved and resized in place by the setters of the object,
+	 * so two objects must not be built with the same rectangle.
 	 * @param hitbox: the hit box
 	 */
 	public PhysicObject(Rectangle hitbox) {
@@ -35,6 +45,7 @@ public abstract class PhysicObject implements Updatable {
 	
 	/**
 	 * The constructor of the object with the hit box.
+	 * The rectangle is not copied (see PhysicObject(Rectangle)).
 	 * @param name: the name of the object
 	 * @param hitbox: the hit box
 	 */
@@ -52,7 +63,8 @@ public abstract class PhysicObject implements Updatable {
 	public abstract void collisionTriggeredOnSide(Side side, PhysicObject object);
 	
 	/**
-	 * Getter of the hit box.
+	 * Getter of the hit box. The rectangle must only be read: to move or resize the object, use setPosition,
+	 * setSize or setBounds, which tell the engine that the object changed.
 	 * @return the hit box
 	 */
 	public Rectangle getHitbox() {
@@ -61,27 +73,83 @@ public abstract class PhysicObject implements Updatable {
 
 	/**
 	 * To get the position of the object.
+	 * It creates a point, so the engine uses getX and getY.
 	 * @return the position
 	 */
 	public Point2D getPosition() {
 		return new Point2D(this.hitbox.getX(), this.hitbox.getY());
 	}
+
+	/**
+	 * Getter of the x of the position of the object.
+	 * @return the x
+	 */
+	public double getX() {
+		return this.hitbox.getX();
+	}
+
+	/**
+	 * Getter of the y of the position of the object.
+	 * @return the y
+	 */
+	public double getY() {
+		return this.hitbox.getY();
+	}
 	
 	/**
 	 * Change the position of the object.
 	 * @param position: the position
-	 * @return 
 	 */
 	public void setPosition(Point2D position) {
-		this.hitbox = new Rectangle(position.getX(), position.getY(), this.hitbox.getWidth(), this.hitbox.getHeight());
+		setPosition(position.getX(), position.getY());
+	}
+
+	/**
+	 * Change the position of the object. The hit box is moved, it's not replaced.
+	 * @param x: the new x
+	 * @param y: the new y
+	 */
+	public void setPosition(double x, double y) {
+		if (x != this.hitbox.getX() || y != this.hitbox.getY()) {
+			this.hitbox.setX(x);
+			this.hitbox.setY(y);
+			markDirty();
+		}
 	}
 	
+	/**
+	 * Change the size of the object. The hit box is resized, it's not replaced.
+	 * @param width: the new width
+	 * @param height: the new height
+	 */
+	public void setSize(double width, double height) {
+		if (width != this.hitbox.getWidth() || height != this.hitbox.getHeight()) {
+			this.hitbox.setWidth(width);
+			this.hitbox.setHeight(height);
+			markDirty();
+		}
+	}
+
+	/**
+	 * Change the position and the size of the object. The hit box is changed, it's not replaced.
+	 * @param x: the new x
+	 * @param y: the new y
+	 * @param width: the new width
+	 * @param height: the new height
+	 */
+	public void setBounds(double x, double y, double width, double height) {
+		setPosition(x, y);
+		setSize(width, height);
+	}
+
 	/**
 	 * Setter of the hit box.
+	 * The rectangle is not copied (see PhysicObject(Rectangle)).
 	 * @param hitbox: the new hit box
 	 */
 	public void setHitbox(Rectangle hitbox) {
 		this.hitbox = hitbox;
+		markDirty();
 	}
 
 	/**
@@ -100,6 +168,95 @@ public abstract class PhysicObject implements Updatable {
 		this.name = name;
 	}
 
+	/**
+	 * Getter of the handle given by the engine when the object has been added.
+	 * @return the handle, or NO_HANDLE if the object is not in an engine
+	 */
+	public int getHandle() {
+		return handle;
+	}
+
+	/**
+	 * Setter of the handle, used by the engine through the link (see ObjectLink).
+	 * @param handle: the new handle
+	 */
+	void setHandle(int handle) {
+		this.handle = handle;
+	}
+
+	/**
+	 * Getter of the collision type of the object.
+	 * @return the type id (0 by default)
+	 */
+	public int getTypeId() {
+		return typeId;
+	}
+
+	/**
+	 * Setter of the collision type of the object, used by the engine to find the handler of a collision when
+	 * the typed dispatch is used (see PhysicsEngine.setCollisionHandler).
+	 * @param typeId: the type id, between 0 and TYPES_COUNT - 1
+	 */
+	public void setTypeId(int typeId) {
+		if (typeId < 0 || typeId >= TYPES_COUNT)
+			throw new IllegalArgumentException("The type id must be between 0 and " + (TYPES_COUNT - 1) + ".");
+
+		this.typeId = typeId;
+	}
+
+	/**
+	 * To tell the engine that the object changed. It's done by the setters of the object, so it's only needed
+	 * if the rectangle of the hit box has been changed directly.
+	 */
+	public void markDirty() {
+		if (!this.dirty) {
+			this.dirty = true;
+			if (this.dirtyListener != null)
+				this.dirtyListener.objectDirty(this);
+		}
+	}
+
+	/**
+	 * Returns if the object changed since the engine refreshed it.
+	 * @return if the object is dirty
+	 */
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * To mark the object as refreshed, used by the engine through the link (see ObjectLink).
+	 */
+	void clearDirty() {
+		this.dirty = false;
+	}
+
+	/**
+	 * To attach the object to an engine, used by the engine when the object is added.
+	 * The object is marked as refreshed and tells its changes to the listener until it's detached.
+	 * @param dirtyListener: the listener told when the object becomes dirty (the engine)
+	 * @return the link the engine uses to change the handle and the dirty flag of the object
+	 * @throws IllegalStateException if the object is already in an engine
+	 */
+	public ObjectLink attach(DirtyListener dirtyListener) {
+		if (dirtyListener == null)
+			throw new IllegalArgumentException("The listener of an attached object can't be null.");
+		if (this.dirtyListener != null)
+			throw new IllegalStateException("The object is already in an engine.");
+
+		this.dirtyListener = dirtyListener;
+		this.dirty = false;
+		return this.link;
+	}
+
+	/**
+	 * To detach the object from its engine, used by the engine through the link (see ObjectLink).
+	 */
+	void detach() {
+		this.handle = NO_HANDLE;
+		this.dirtyListener = null;
+	}
+
 	@Override
 	public void update(float delta) {
 		// here nothing
@@ -1,6 +1,5 @@
 package testObjects;
 
-import javafx.geometry.Point2D;
 import physics.Side;
 import physics.objects.PhysicEntity;
 import physics.objects.PhysicObject;
@@ -18,11 +17,11 @@ public class Player extends PhysicEntity {
         if(object instanceof Wall) {
             // top or bottom
             if (side == Side.TOP || side == Side.BOTTOM)
-                this.velocity = new Point2D(this.velocity.getX(), 0);
+                setVelocityY(0);
 
             // right or left
             else
-                this.velocity = new Point2D(0, this.velocity.getY());
+                setVelocityX(0);
         }
 
         System.out.println("I'm named " + this.name + " and I've been hit on my " + side.toString() + " by " + object.getName());
@@ -1,6 +1,5 @@
 package testObjects.Util;
 
-import javafx.geometry.Point2D;
 import physics.Util.ObjectsImageLoader;
 import physics.objects.PhysicEntity;
 import physics.objects.PhysicObject;
@@ -34,10 +33,16 @@ public class MyImagePatternLoader extends ObjectsImageLoader {
 
         else if(color == 255) {
             result = new Player();
-            ((PhysicEntity) result).setVelocity(new Point2D(0, -50)); // apply a velocity
+            ((PhysicEntity) result).setVelocity(0, -50); // apply a velocity
             result.setName("Player");
         }
 
         return result;
     }
+
+    // the player is the only entity, so no object is created to know it
+    @Override
+    protected boolean isEntityColor(int color) {
+        return color == 255;
+    }
 }